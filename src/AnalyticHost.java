@@ -1,11 +1,21 @@
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /* An abstract host used to calculate latency and througput metrics of the network */
 public abstract class AnalyticHost extends Host {
 
     public static final int INTEGER_BYTE_SIZE = Integer.SIZE / Byte.SIZE;
+    public static final int LONG_BYTE_SIZE = Long.SIZE / Byte.SIZE;
+    public static final int ONE_WAY_DELAY_MIN_MSG_SIZE = 3 * LONG_BYTE_SIZE;
+    public static final int PIPELINED_ECHO_MIN_MSG_SIZE = 2 * INTEGER_BYTE_SIZE;
 
     static final int END_OF_TRANSMISSION = -2;
     static final int HEADER_SENTINEL = -1;
@@ -13,8 +23,48 @@ public abstract class AnalyticHost extends Host {
     static final int ACK_REQUEST = 1;
     static final int ECHO_REQUEST = 2;
     static final int THROUGHPUT_METRICS_REQUEST = 3;
-
-    static final int HEADER_SIZE = 1 + (Integer.SIZE / Byte.SIZE) * 3;
+    static final int PROBE_STREAM_REQUEST = 4;
+    static final int CLOCK_SYNC_REQUEST = 5;
+    static final int ONE_WAY_DELAY_REQUEST = 6;
+    static final int VERSION_NEGOTIATION_REQUEST = 7;
+    static final int PIPELINED_ECHO_REQUEST = 8;
+    static final int CONNECTION_SETUP_REQUEST = 9;
+    static final int TLS_HANDSHAKE_REQUEST = 10;
+    static final int RESOURCE_USAGE_REQUEST = 11;
+    static final int FORWARD_ERROR_CORRECTION_REQUEST = 12;
+    static final int FULL_DUPLEX_THROUGHPUT_REQUEST = 13;
+
+    static final int HEADER_SIZE = FrameParser.V1_FRAME_SIZE;
+    static final int HEADER_V2_SIZE = FrameParser.V2_HEADER_SIZE + FrameParser.V1_PAYLOAD_LENGTH;
+
+    static final int PROTOCOL_VERSION_1 = 1;
+    static final int PROTOCOL_VERSION_2 = FrameParser.V2_VERSION;
+    static final int MAX_PROTOCOL_VERSION = PROTOCOL_VERSION_2;
+    static final int VERSION_NEGOTIATION_TIMEOUT = 1000;
+    static final int PIPELINE_TIMEOUT = 1000;
+
+    //long enough for the server to outlast a slot lost twice in a row while the client waits each loss out
+    static final int PIPELINE_SERVER_TIMEOUT = 3 * PIPELINE_TIMEOUT;
+
+    int protocolVersion = PROTOCOL_VERSION_1;
+    int sessionId;
+    int sequenceNumber;
+    FrameParser headerParser = new FrameParser();
+    ByteBuffer headerBuffer = ByteBuffer.allocate(2 * HEADER_V2_SIZE).flip();
+
+    //the usage of the most recent measurement as a client, and of every request served since the last query as a server
+    ResourceUsage measurementUsage = new ResourceUsage();
+    ResourceUsage serverUsage = new ResourceUsage();
+
+    //null unless per-packet tracing has been enabled
+    PacketTracer tracer;
+
+    //pipelined request ids are never reused on a host, so a late reply from an earlier test cannot complete a request
+    int nextPipelinedRequestId;
+
+    //messages are sent from the arena and read into a buffer that grows to the largest message seen, never shrinking
+    PayloadArena payloadArena = PayloadArena.getDefault();
+    byte[] receiveBuffer = new byte[0];
 
     /* Measures round-trip latency time with the remote host using a message of the given size */
     public long echoTest(int msgSize) throws Exception {
@@ -34,14 +84,16 @@ public abstract class AnalyticHost extends Host {
             throw new IOException();
         }
 
-        //build message
-        byte[] msg = new byte[msgSize];
-        rand.nextBytes(msg);
+        //take the message from the payload arena
+        int offset = payloadArena.slice(msgSize);
+        byte[] echo = getReceiveBuffer(msgSize);
 
         //start clock and send message
+        measurementUsage.reset();
+        measurementUsage.start();
         startTime = System.nanoTime();
         try {
-            sendMsg(msg);
+            sendMsg(payloadArena.getArray(), offset, msgSize);
         } catch (IOException e) {
             System.out.println("Message Failed to Send");
             e.printStackTrace();
@@ -50,18 +102,20 @@ public abstract class AnalyticHost extends Host {
 
         //read echo and stop clock
         try {
-            readMsg(msg);
+            readMsg(echo, 0, msgSize);
         } catch (IOException e) {
             System.out.println("An Error occurred in reading the echoed message");
             throw new IOException();
         }
         endTime = System.nanoTime();
+        measurementUsage.stop();
 
         return endTime - startTime;
     }
 
     /* Measures round-trip latency time with the remote host in both directions using messages of the given size.
-     * Returns an list of the measured data which will be used to estimate throughput
+     * Returns an list of the measured data which will be used to estimate throughput. In a version 2 session the list
+     * also holds the CPU time and allocated bytes of the server's side of the exchange.
    	*/
     public ArrayList<Long> throughputTest(int msgSize) throws Exception {
         if (!isConnectedToRemoteHost()) {
@@ -81,14 +135,16 @@ public abstract class AnalyticHost extends Host {
             throw new IOException();
         }
 
-        //build message
-        byte[] msg = new byte[msgSize];
-        rand.nextBytes(msg);
+        //take the message from the payload arena
+        int offset = payloadArena.slice(msgSize);
+        byte[] echo = getReceiveBuffer(msgSize);
 
         //start clock and send message
+        measurementUsage.reset();
+        measurementUsage.start();
         startTime = System.nanoTime();
         try {
-            sendMsg(msg);
+            sendMsg(payloadArena.getArray(), offset, msgSize);
         } catch (IOException e) {
             System.out.println("Message failed to send");
             throw new IOException();
@@ -105,37 +161,547 @@ public abstract class AnalyticHost extends Host {
 
         //read echo and send ACK
         try {
-            readMsg(msg);
+            readMsg(echo, 0, msgSize);
             sendByte(ACK);
         } catch (IOException e) {
             System.out.println("An Error occurred in responding to echo");
             throw new IOException();
         }
+        measurementUsage.stop();
 
         //read results from server
-        long serverResults;
+        results.add(endTime - startTime);
         try {
-            serverResults = readLong();
+            if (protocolVersion == PROTOCOL_VERSION_1) {
+                results.add(readLong());
+            }
+            else {
+                byte[] serverResults = new byte[3 * LONG_BYTE_SIZE];
+                readMsg(serverResults);
+                ByteBuffer serverResultsBuffer = ByteBuffer.wrap(serverResults);
+                results.add(serverResultsBuffer.getLong());
+                results.add(serverResultsBuffer.getLong());
+                results.add(serverResultsBuffer.getLong());
+            }
         } catch (IOException e) {
             System.out.println("An Error occurred in reading the server results");
             throw new IOException();
         }
 
+        return results;
+    }
+
+    /* Measures throughput with both hosts sending totalByteCount bytes, in messages of msgSize, at the same time. Each host
+     * writes on a dedicated thread while reading on its own, so the two directions compete for the path as they would
+     * under bidirectional load. Each direction is timed by its receiver, from when it released the other host's writer to
+     * the arrival of the last byte: the client's clock starts as it sends the request, the server's as it sends the
+     * acknowledgement. Both times therefore include one round trip, as the sequential throughput test's do. The usage
+     * measured covers both the reading and the writing thread. Returns the client-to-server time followed by the
+     * server-to-client time.
+     */
+    public ArrayList<Long> fullDuplexThroughputTest(int totalByteCount, int msgSize) throws Exception {
+        if (!isConnectedToRemoteHost()) {
+            System.out.println("No Connection Established with Remote Host");
+            throw new IOException();
+        }
+        if (protocolVersion == PROTOCOL_VERSION_1) {
+            System.out.println("The remote host does not support the full-duplex throughput test");
+            throw new IOException();
+        }
+
+        //send header and wait for the server to start its writer
+        byte[] header = buildHeader(FULL_DUPLEX_THROUGHPUT_REQUEST, totalByteCount, msgSize);
+        ExecutorService writer = startWriterThread();
+        long startTime = System.nanoTime();
+        try {
+            sendMsg(header);
+            readACK();
+        } catch (IOException e) {
+            writer.shutdown();
+            System.out.println("An Error occurred in starting the full-duplex transfer");
+            throw new IOException();
+        }
+
+        measurementUsage.reset();
+        measurementUsage.start();
+        long endTime = transferFullDuplex(writer, totalByteCount, msgSize, measurementUsage);
+        measurementUsage.stop();
+
+        ArrayList<Long> results = new ArrayList<Long>();
+        try {
+            results.add(readLong());
+        } catch (IOException e) {
+            System.out.println("An Error occurred in reading the server results");
+            throw new IOException();
+        }
         results.add(endTime - startTime);
-        results.add(serverResults);
+        return results;
+    }
+
+    /* Starts the writer's thread ahead of the transfer, so that creating it is not part of the measurement */
+    private static ExecutorService startWriterThread() {
+        ThreadPoolExecutor writer = (ThreadPoolExecutor)Executors.newFixedThreadPool(1);
+        writer.prestartCoreThread();
+        return writer;
+    }
+
+    /* Writes totalByteCount bytes on the writer's thread while reading as many on this one, then shuts the writer down.
+     * Adds the writer thread's usage to usage, whose start() and stop() the caller makes on this thread. Returns the time
+     * the last byte was read, once the writer has finished too.
+     */
+    private long transferFullDuplex(ExecutorService writer, int totalByteCount, int msgSize, ResourceUsage usage) throws IOException {
+        byte[] payload = payloadArena.getArray();
+        int offset = payloadArena.slice(msgSize);
+        byte[] incoming = getReceiveBuffer(msgSize);
+
+        Future<ResourceUsage> written = writer.submit(() -> {
+            ResourceUsage writerUsage = new ResourceUsage();
+            writerUsage.start();
+            for (int bytesSent = 0; bytesSent < totalByteCount; bytesSent += msgSize) {
+                sendMsg(payload, offset, Math.min(msgSize, totalByteCount - bytesSent));
+            }
+            writerUsage.stop();
+            return writerUsage;
+        });
+
+        long endTime;
+        try {
+            for (int bytesReadIn = 0; bytesReadIn < totalByteCount; bytesReadIn += msgSize) {
+                readMsg(incoming, 0, Math.min(msgSize, totalByteCount - bytesReadIn));
+            }
+            endTime = System.nanoTime();
+
+            ResourceUsage writerUsage = written.get();
+            usage.add(writerUsage.getCpuTime(), writerUsage.getAllocatedBytes(), 0);
+        } catch (IOException e) {
+            System.out.println("An Error occurred in reading the full-duplex transfer");
+            throw new IOException();
+        } catch (InterruptedException | ExecutionException e) {
+            System.out.println("An Error occurred in writing the full-duplex transfer");
+            throw new IOException();
+        } finally {
+            writer.shutdown();
+        }
+        return endTime;
+    }
 
+    /* Measures the time it takes to fully transfer a message of a given size using smaller fixed-size packets */
+    public long packetTransferTest(int totalByteCount, int msgSize) throws IOException {
+        if (!isConnectedToRemoteHost()) {
+            System.out.println("No Connection Established with Remote Host");
+            throw new IOException();
+        }
+
+        long startTime, endTime;
+
+        //send header
+        byte[] header = buildHeader(ACK_REQUEST, totalByteCount, msgSize);
+        try {
+            sendMsg(header);
+        } catch(IOException e) {
+            System.out.println("An Error occurred sending header");
+            throw new IOException();
+        }
+
+        //take the message from the payload arena
+        byte[] payload = payloadArena.getArray();
+        int offset = payloadArena.slice(msgSize);
+
+        //start time and begin sending messages
+        measurementUsage.reset();
+        measurementUsage.start();
+        startTime = System.nanoTime();
+        for (int bytesSent = 0; bytesSent < totalByteCount; bytesSent += msgSize)
+        {
+            try {
+                sendMsg(payload, offset, msgSize);
+            } catch (IOException e) {
+                System.out.println("An Error occurred in sending the message");
+                throw new IOException();
+            }
+
+            try {
+                readACK();
+            } catch (IOException e) {
+                System.out.println("An Error occurred in receiving ACK");
+                throw new IOException();
+            }
+        }
+        endTime = System.nanoTime();
+        measurementUsage.stop();
+
+        return endTime - startTime;
+    }
+
+    /* Sets the arena that this host's tests take their messages from */
+    public void setPayloadArena(PayloadArena payloadArena) {
+        this.payloadArena = payloadArena;
+    }
+
+    /* Returns a buffer of at least size bytes for reading messages into. The buffer is reused by every later call. */
+    protected byte[] getReceiveBuffer(int size) {
+        if (receiveBuffer.length < size) {
+            this.receiveBuffer = new byte[size];
+        }
+        return receiveBuffer;
+    }
+
+    /* Records the packets this host sends and receives to the given tracer, or stops tracing if it is null */
+    public void setPacketTracer(PacketTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    protected void trace(int eventType, int packetNumber, int size) {
+        if (tracer != null) {
+            tracer.record(sessionId, eventType, packetNumber, size);
+        }
+    }
+
+    /* Returns the CPU time and allocation of the last echo, throughput or packet transfer test on this host */
+    public ResourceUsage getLastResourceUsage() {
+        return measurementUsage;
+    }
+
+    /* Returns the CPU time, allocation and number of requests the remote host has served since the last call, or null
+     * if the session predates protocol version 2 and the remote host cannot report them.
+     */
+    public ResourceUsage fetchRemoteResourceUsage() throws IOException {
+        if (protocolVersion == PROTOCOL_VERSION_1) {
+            return null;
+        }
+
+        byte[] header = buildHeader(RESOURCE_USAGE_REQUEST, 0, 0);
+        byte[] usage = new byte[3 * LONG_BYTE_SIZE];
+        try {
+            sendMsg(header);
+            readMsg(usage);
+        } catch (IOException e) {
+            System.out.println("An Error occurred in reading the remote resource usage");
+            throw new IOException();
+        }
+
+        ByteBuffer usageBuffer = ByteBuffer.wrap(usage);
+        ResourceUsage remoteUsage = new ResourceUsage();
+        remoteUsage.add(usageBuffer.getLong(), usageBuffer.getLong(), usageBuffer.getLong());
+        return remoteUsage;
+    }
+
+    /* Estimates the offset and drift of the remote host's clock using the given number of NTP-style exchanges */
+    public ClockOffsetEstimate clockSyncTest(int rounds) throws Exception {
+        if (!isConnectedToRemoteHost()) {
+            System.out.println("No Connection Established with Remote Host");
+            throw new IOException();
+        }
+
+        //send header
+        byte[] header = buildHeader(CLOCK_SYNC_REQUEST, rounds * LONG_BYTE_SIZE, LONG_BYTE_SIZE);
+        try {
+            sendMsg(header);
+        } catch (IOException e) {
+            System.out.println("Header Failed to Send");
+            throw new IOException();
+        }
+
+        ClockOffsetEstimate estimate = new ClockOffsetEstimate();
+        byte[] remoteTimestamps = new byte[2 * LONG_BYTE_SIZE];
+        for (int i = 0; i < rounds; i++) {
+            long t1, t4;
+            try {
+                t1 = WallClock.nanoTime();
+                sendLong(t1);
+                readMsg(remoteTimestamps);
+                t4 = WallClock.nanoTime();
+            } catch (IOException e) {
+                System.out.println("An Error occurred in the clock synchronization exchange");
+                throw new IOException();
+            }
+            ByteBuffer timestamps = ByteBuffer.wrap(remoteTimestamps);
+            estimate.addSample(t1, timestamps.getLong(), timestamps.getLong(), t4);
+        }
+        return estimate;
+    }
+
+    /* Measures the delay in each direction separately by stamping a message of the given size with wall-clock times on
+     * both hosts. The remote clock's offset is removed using the given estimate, whose error bound also bounds the
+     * error of the results. Returns the client-to-server delay followed by the server-to-client delay.
+     */
+    public ArrayList<Long> oneWayDelayTest(int msgSize, ClockOffsetEstimate clockOffset) throws Exception {
+        if (!isConnectedToRemoteHost()) {
+            System.out.println("No Connection Established with Remote Host");
+            throw new IOException();
+        }
+        if (msgSize < ONE_WAY_DELAY_MIN_MSG_SIZE) {
+            System.out.println("One-way delay messages must be at least " + ONE_WAY_DELAY_MIN_MSG_SIZE + " bytes");
+            throw new IOException();
+        }
+
+        //send header
+        byte[] header = buildHeader(ONE_WAY_DELAY_REQUEST, msgSize, msgSize);
+        try {
+            sendMsg(header);
+        } catch (IOException e) {
+            System.out.println("Header Failed to Send");
+            throw new IOException();
+        }
+
+        //build message
+        byte[] msg = new byte[msgSize];
+        rand.nextBytes(msg);
+        ByteBuffer timestamps = ByteBuffer.wrap(msg);
+
+        //stamp and send message
+        long sendTime;
+        try {
+            sendTime = WallClock.nanoTime();
+            timestamps.putLong(0, sendTime);
+            sendMsg(msg);
+        } catch (IOException e) {
+            System.out.println("Message Failed to Send");
+            throw new IOException();
+        }
+
+        //read the stamped echo
+        long receiveTime;
+        try {
+            readMsg(msg);
+            receiveTime = WallClock.nanoTime();
+        } catch (IOException e) {
+            System.out.println("An Error occurred in reading the echoed message");
+            throw new IOException();
+        }
+
+        long remoteReceiveTime = timestamps.getLong(LONG_BYTE_SIZE);
+        long remoteSendTime = timestamps.getLong(2 * LONG_BYTE_SIZE);
+
+        ArrayList<Long> results = new ArrayList<Long>();
+        results.add(remoteReceiveTime - sendTime - clockOffset.getOffset(sendTime));
+        results.add(receiveTime - remoteSendTime + clockOffset.getOffset(receiveTime));
         return results;
     }
 
+    /* Asks the remote host to switch to the highest protocol version we both support. The request is a version 1 header
+     * with no message bytes, which servers predating version 2 read and silently ignore; if no answer arrives within
+     * VERSION_NEGOTIATION_TIMEOUT we stay on version 1. Returns the negotiated version.
+     */
+    public int negotiateProtocolVersion() throws IOException {
+        if (!isConnectedToRemoteHost()) {
+            System.out.println("No Connection Established with Remote Host");
+            throw new IOException();
+        }
+
+        resetProtocolVersion();
+        byte[] header = buildHeader(VERSION_NEGOTIATION_REQUEST, 0, MAX_PROTOCOL_VERSION);
+        try {
+            sendMsg(header);
+        } catch (IOException e) {
+            System.out.println("Header Failed to Send");
+            throw new IOException();
+        }
+
+        byte[] response = new byte[2 * INTEGER_BYTE_SIZE];
+        try {
+            setReadTimeout(VERSION_NEGOTIATION_TIMEOUT);
+            readMsg(response);
+        } catch (SocketTimeoutException e) {
+            System.out.println("Remote host does not support protocol negotiation, using version " + PROTOCOL_VERSION_1);
+            return protocolVersion;
+        } finally {
+            setReadTimeout(0);
+        }
+
+        ByteBuffer agreement = ByteBuffer.wrap(response);
+        this.protocolVersion = agreement.getInt();
+        this.sessionId = agreement.getInt();
+        return protocolVersion;
+    }
+
+    /* Returns to version 1 framing, as used at the start of every connection */
+    protected void resetProtocolVersion() {
+        this.protocolVersion = PROTOCOL_VERSION_1;
+        this.sessionId = 0;
+        this.sequenceNumber = 0;
+        this.headerBuffer.clear().flip();
+    }
+
+    public int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    /* Measures how many small requests per second the path sustains by keeping up to pipelineDepth echo requests in
+     * flight at once. Each request carries its id and the index of the slot it occupies in a preallocated table of send
+     * times, so replies can be matched in whatever order they arrive. A request without a reply PIPELINE_TIMEOUT after it
+     * was sent is counted as lost and its slot reused, until requestCount requests have been sent. The run ends at the
+     * last reply, so waiting out requests lost at the end of the run does not count against the rate.
+     */
+    public PipelinedEchoResult pipelinedEchoTest(int requestCount, int msgSize, int pipelineDepth) throws Exception {
+        if (!isConnectedToRemoteHost()) {
+            System.out.println("No Connection Established with Remote Host");
+            throw new IOException();
+        }
+        if (msgSize < PIPELINED_ECHO_MIN_MSG_SIZE) {
+            System.out.println("Pipelined echo messages must be at least " + PIPELINED_ECHO_MIN_MSG_SIZE + " bytes");
+            throw new IOException();
+        }
+
+        //send header
+        byte[] header = buildHeader(PIPELINED_ECHO_REQUEST, requestCount, msgSize);
+        try {
+            sendMsg(header);
+        } catch (IOException e) {
+            System.out.println("Header Failed to Send");
+            throw new IOException();
+        }
+
+        //build message and slot table
+        byte[] msg = new byte[msgSize];
+        rand.nextBytes(msg);
+        ByteBuffer request = ByteBuffer.wrap(msg);
+        byte[] echo = new byte[msgSize];
+        ByteBuffer response = ByteBuffer.wrap(echo);
+
+        int[] slotRequestIds = new int[pipelineDepth];
+        long[] slotSendTimes = new long[pipelineDepth];
+        long[] latencies = new long[requestCount];
+        Arrays.fill(slotRequestIds, -1);
+
+        long timeout = PIPELINE_TIMEOUT * 1000000L;
+        int sentCount = 0;
+        int completedCount = 0;
+        int lostCount = 0;
+        int outstandingCount = 0;
+
+        long startTime = System.nanoTime();
+        long endTime = startTime;
+        long lastSendTime = startTime;
+        try {
+            setReadTimeout(PIPELINE_TIMEOUT);
+
+            //fill the pipeline
+            for (int slot = 0; slot < pipelineDepth && sentCount < requestCount; slot++) {
+                sendPipelinedRequest(request, slot, slotRequestIds, slotSendTimes);
+                sentCount++;
+                outstandingCount++;
+            }
+            lastSendTime = System.nanoTime();
+
+            //each reply or expiry frees a slot, which is immediately reused for the next request
+            long nextExpiryTime = startTime + timeout;
+            while (outstandingCount > 0) {
+                boolean timedOut = false;
+                try {
+                    readMsg(echo);
+                } catch (SocketTimeoutException e) {
+                    timedOut = true;
+                }
+                long receiveTime = System.nanoTime();
+
+                int slot = response.getInt(INTEGER_BYTE_SIZE);
+                if (!timedOut && slot >= 0 && slot < pipelineDepth && slotRequestIds[slot] == response.getInt(0)) {
+                    latencies[completedCount++] = receiveTime - slotSendTimes[slot];
+                    endTime = receiveTime;
+                    slotRequestIds[slot] = -1;
+                    outstandingCount--;
+
+                    if (sentCount < requestCount) {
+                        sendPipelinedRequest(request, slot, slotRequestIds, slotSendTimes);
+                        sentCount++;
+                        outstandingCount++;
+                        lastSendTime = slotSendTimes[slot];
+                    }
+                }
+
+                //anything else is a duplicate or a reply to a request already given up on, which is discarded
+                if (!timedOut && receiveTime < nextExpiryTime) {
+                    continue;
+                }
+
+                //expire only the slots that have waited out the timeout, and find when the next one will
+                nextExpiryTime = Long.MAX_VALUE;
+                for (slot = 0; slot < pipelineDepth; slot++) {
+                    if (slotRequestIds[slot] == -1) {
+                        continue;
+                    }
+                    if (receiveTime - slotSendTimes[slot] >= timeout) {
+                        lostCount++;
+                        slotRequestIds[slot] = -1;
+                        outstandingCount--;
+
+                        if (sentCount < requestCount) {
+                            sendPipelinedRequest(request, slot, slotRequestIds, slotSendTimes);
+                            sentCount++;
+                            outstandingCount++;
+                            lastSendTime = slotSendTimes[slot];
+                        }
+                    }
+                    if (slotRequestIds[slot] != -1) {
+                        nextExpiryTime = Math.min(nextExpiryTime, slotSendTimes[slot] + timeout);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("An Error occurred in the pipelined echo exchange");
+            throw new IOException();
+        } finally {
+            setReadTimeout(0);
+        }
+
+        //a lost request leaves the server short of requestCount, so wait until it has given up before the next header,
+        //with a slot timeout to spare for the server's last read having started after our last send
+        if (lostCount > 0) {
+            long serverGiveUpTime = lastSendTime + (PIPELINE_SERVER_TIMEOUT + PIPELINE_TIMEOUT) * 1000000L;
+            long remaining = serverGiveUpTime - System.nanoTime();
+            if (remaining > 0) {
+                Thread.sleep(remaining / 1000000 + 1);
+            }
+        }
+
+        return new PipelinedEchoResult(pipelineDepth, completedCount, lostCount, endTime - startTime, latencies);
+    }
+
+    private void sendPipelinedRequest(ByteBuffer request, int slot, int[] slotRequestIds, long[] slotSendTimes) throws IOException {
+
+        //ids stay non-negative, since -1 marks a free slot
+        int requestId = nextPipelinedRequestId;
+        nextPipelinedRequestId = (nextPipelinedRequestId + 1) & Integer.MAX_VALUE;
+        request.putInt(0, requestId);
+        request.putInt(INTEGER_BYTE_SIZE, slot);
+        slotRequestIds[slot] = requestId;
+        slotSendTimes[slot] = System.nanoTime();
+        sendMsg(request.array());
+    }
+
+    /* Echoes pipelined requests as they arrive, which is in order over a stream and in any order over datagrams. If
+     * requests were lost the server gives up after PIPELINE_SERVER_TIMEOUT without one; the client, having lost them too,
+     * waits that long after its last request before it sends the next header.
+     */
+    private void replyToPipelinedEcho(int requestCount, int msgSize) throws IOException {
+        byte[] msg = new byte[msgSize];
+        try {
+            setReadTimeout(PIPELINE_SERVER_TIMEOUT);
+            for (int i = 0; i < requestCount; i++) {
+                readMsg(msg);
+                sendMsg(msg);
+            }
+        } catch (SocketTimeoutException ignored) {
+
+            //the remaining requests were lost
+        } catch (IOException e) {
+            System.out.println("Failed to Respond to Pipelined Echo Request");
+            throw new IOException();
+        } finally {
+            setReadTimeout(0);
+        }
+    }
+
     protected boolean reply() throws IOException {
         int requestCode;
         int totalByteCount;
         int msgSize;
         try {
-            byte[] header = readHeader();
-            requestCode = header[INTEGER_BYTE_SIZE];
-            totalByteCount = ByteConverter.byteArrayToInt(Arrays.copyOfRange(header, 5, 9));
-            msgSize = ByteConverter.byteArrayToInt(Arrays.copyOfRange(header, 9, header.length));
+            FrameParser header = readHeader();
+            requestCode = header.getRequestCode();
+            totalByteCount = header.getPayloadInt(0);
+            msgSize = header.getPayloadInt(INTEGER_BYTE_SIZE);
         } catch (IOException e) {
             System.out.println("Error Reading Header");
             throw new IOException();
@@ -146,13 +712,54 @@ public abstract class AnalyticHost extends Host {
             return false;
         }
 
+        if (requestCode == VERSION_NEGOTIATION_REQUEST) {
+            int agreedVersion = Math.min(msgSize, MAX_PROTOCOL_VERSION);
+            int newSessionId = rand.nextInt();
+            ByteBuffer agreement = ByteBuffer.allocate(2 * INTEGER_BYTE_SIZE);
+            agreement.putInt(agreedVersion);
+            agreement.putInt(newSessionId);
+            try {
+                sendMsg(agreement.array());
+            } catch (IOException e) {
+                System.out.println("Failed to Respond to Version Negotiation Request");
+                throw new IOException();
+            }
+            this.protocolVersion = agreedVersion;
+            this.sessionId = newSessionId;
+            this.sequenceNumber = 0;
+            return true;
+        }
+
+        if (requestCode == RESOURCE_USAGE_REQUEST) {
+            ByteBuffer usage = ByteBuffer.allocate(3 * LONG_BYTE_SIZE);
+            usage.putLong(serverUsage.getCpuTime());
+            usage.putLong(serverUsage.getAllocatedBytes());
+            usage.putLong(serverUsage.getOperationCount());
+            try {
+                sendMsg(usage.array());
+            } catch (IOException e) {
+                System.out.println("Failed to Respond to Resource Usage Request");
+                throw new IOException();
+            }
+            serverUsage.reset();
+            return true;
+        }
+
+        serverUsage.start();
+        if (replyToExtendedRequest(requestCode, totalByteCount, msgSize)) {
+            serverUsage.stop();
+            return true;
+        }
+
+        byte[] msg = getReceiveBuffer(msgSize);
         for (int bytesReadIn = 0; bytesReadIn < totalByteCount; bytesReadIn += msgSize) {
             int unreadBytes = totalByteCount - bytesReadIn;
             int currentMsgSize = unreadBytes >= msgSize ? msgSize : unreadBytes;
-            byte[] msg = new byte[currentMsgSize];
 
+            long receiveTime;
             try {
-                readMsg(msg);
+                readMsg(msg, 0, currentMsgSize);
+                receiveTime = WallClock.nanoTime();
             } catch (IOException e) {
                 System.out.println("Error Reading Packet");
                 throw new IOException();
@@ -169,7 +776,7 @@ public abstract class AnalyticHost extends Host {
                     break;
                 case ECHO_REQUEST:
                     try {
-                        sendMsg(msg);
+                        sendMsg(msg, 0, currentMsgSize);
                     } catch(IOException e) {
                         System.out.println("Failed to Respond to Echo Request");
                         throw new IOException();
@@ -178,48 +785,151 @@ public abstract class AnalyticHost extends Host {
                 case THROUGHPUT_METRICS_REQUEST:
                     long startTime;
                     try {
+                        ResourceUsage replyUsage = new ResourceUsage();
+                        replyUsage.start();
                         sendByte(ACK);
                         startTime = System.nanoTime();
-                        sendMsg(msg);
+                        sendMsg(msg, 0, currentMsgSize);
                         readACK();
                         long endTime = System.nanoTime();
-                        sendLong(endTime - startTime);
+                        replyUsage.stop();
+                        if (protocolVersion == PROTOCOL_VERSION_1) {
+                            sendLong(endTime - startTime);
+                        }
+                        else {
+                            ByteBuffer results = ByteBuffer.allocate(3 * LONG_BYTE_SIZE);
+                            results.putLong(endTime - startTime);
+                            results.putLong(replyUsage.getCpuTime());
+                            results.putLong(replyUsage.getAllocatedBytes());
+                            sendMsg(results.array());
+                        }
                     } catch(IOException e) {
                         System.out.println("Failed to Respond to Throughput Metric Request");
                         throw new IOException();
                     }
                     break;
+                case CLOCK_SYNC_REQUEST:
+                    try {
+                        ByteBuffer timestamps = ByteBuffer.allocate(2 * LONG_BYTE_SIZE);
+                        timestamps.putLong(receiveTime);
+                        timestamps.putLong(WallClock.nanoTime());
+                        sendMsg(timestamps.array());
+                    } catch(IOException e) {
+                        System.out.println("Failed to Respond to Clock Sync Request");
+                        throw new IOException();
+                    }
+                    break;
+                case ONE_WAY_DELAY_REQUEST:
+                    if (currentMsgSize < ONE_WAY_DELAY_MIN_MSG_SIZE) {
+                        System.out.println("One-way delay message too short: " + currentMsgSize);
+                        throw new IOException();
+                    }
+                    try {
+                        ByteBuffer timestamps = ByteBuffer.wrap(msg);
+                        timestamps.putLong(LONG_BYTE_SIZE, receiveTime);
+                        timestamps.putLong(2 * LONG_BYTE_SIZE, WallClock.nanoTime());
+                        sendMsg(msg, 0, currentMsgSize);
+                    } catch(IOException e) {
+                        System.out.println("Failed to Respond to One-Way Delay Request");
+                        throw new IOException();
+                    }
+                    break;
                 default:
                     System.out.println("Invalid request code: " + requestCode);
                     throw new IOException();
             }
         }
+        serverUsage.stop();
         return true;
     }
 
+    /* Gives protocol-specific hosts the chance to serve requests that do not follow the read-and-respond pattern
+     * used by the request codes above. Returns true if the request was handled.
+     */
+    protected boolean replyToExtendedRequest(int requestCode, int totalByteCount, int msgSize) throws IOException {
+        if (requestCode == PIPELINED_ECHO_REQUEST) {
+            replyToPipelinedEcho(totalByteCount, msgSize);
+            return true;
+        }
+        if (requestCode == FULL_DUPLEX_THROUGHPUT_REQUEST) {
+            ExecutorService writer = startWriterThread();
+            try {
+                long startTime = System.nanoTime();
+                sendByte(ACK);
+                long endTime = transferFullDuplex(writer, totalByteCount, msgSize, serverUsage);
+                sendLong(endTime - startTime);
+            } catch (IOException e) {
+                writer.shutdown();
+                System.out.println("Failed to Respond to Full-Duplex Throughput Request");
+                throw new IOException();
+            }
+            return true;
+        }
+        return false;
+    }
+
     public byte[] buildHeader(int requestCode, int msgSize, int packetSize) {
-        byte[] header = new byte[HEADER_SIZE];
+        ByteBuffer header;
+        if (protocolVersion == PROTOCOL_VERSION_1) {
+            header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(HEADER_SENTINEL);
+            header.put((byte)requestCode);
+        }
+        else {
+            header = ByteBuffer.allocate(HEADER_V2_SIZE);
+            FrameParser.writeHeader(header, requestCode, FrameParser.FLAGS_NONE, sessionId, sequenceNumber++, FrameParser.V1_PAYLOAD_LENGTH);
+        }
+        header.putInt(msgSize);
+        header.putInt(packetSize);
 
-        byte[] headerSentinelAsBytes = ByteConverter.intToByteArray(HEADER_SENTINEL);
-        System.arraycopy(headerSentinelAsBytes, 0, header, 0, headerSentinelAsBytes.length);
-        header[INTEGER_BYTE_SIZE] = (byte)requestCode;
-        byte[] msgSizeAsBytes = ByteConverter.intToByteArray(msgSize);
-        byte[] packetSizeAsBytes = ByteConverter.intToByteArray(packetSize);
+        return header.array();
+    }
 
-        System.arraycopy(msgSizeAsBytes, 0, header, 5, msgSizeAsBytes.length);
-        System.arraycopy(packetSizeAsBytes, 0, header, 5 + msgSizeAsBytes.length, packetSizeAsBytes.length);
+    /* Reads until a complete header belonging to this session has been parsed. The returned parser's fields stay valid
+     * until the next call.
+     */
+    public FrameParser readHeader() throws IOException {
+        while (true) {
+            while (!headerParser.parse(headerBuffer)) {
+                readHeaderBytes();
+            }
 
-        return header;
+            if (headerParser.getVersion() == PROTOCOL_VERSION_1 || headerParser.getSessionId() == sessionId) {
+                break;
+            }
+            System.out.println("Ignoring header from session " + headerParser.getSessionId());
+        }
+
+        if (headerParser.getVersion() == PROTOCOL_VERSION_2) {
+            int receivedSequenceNumber = headerParser.getSequenceNumber();
+            if (receivedSequenceNumber != sequenceNumber) {
+                System.out.println("Expected header " + sequenceNumber + " but received " + receivedSequenceNumber);
+            }
+            this.sequenceNumber = receivedSequenceNumber + 1;
+        }
+
+        return headerParser;
     }
 
-    public byte[] readHeader() throws IOException {
-        byte[] header = new byte[HEADER_SIZE];
-        int headerSentinel;
-        do {
-            readMsg(header);
-            headerSentinel = ByteConverter.byteArrayToInt(Arrays.copyOfRange(header, 0, 4));
-        } while (headerSentinel != HEADER_SENTINEL);
+    /* Reads more of the pending frame into the header buffer, in place after the bytes it already holds. Only as many
+     * bytes as the frame still needs are read, so bytes that follow a header are never consumed along with it.
+     */
+    protected void readHeaderBytes() throws IOException {
+        int bytesToRead = headerBuffer.hasRemaining() ? headerParser.getBytesNeeded() : getHeaderSize();
+        if (headerBuffer.remaining() + bytesToRead > headerBuffer.capacity()) {
+
+            //a frame this large cannot be a header, so resynchronize past its first byte
+            headerBuffer.position(headerBuffer.position() + 1);
+            return;
+        }
+
+        headerBuffer.compact();
+        readMsg(headerBuffer.array(), headerBuffer.position(), bytesToRead);
+        headerBuffer.position(headerBuffer.position() + bytesToRead);
+        headerBuffer.flip();
+    }
 
-        return header;
+    private int getHeaderSize() {
+        return protocolVersion == PROTOCOL_VERSION_1 ? HEADER_SIZE : HEADER_V2_SIZE;
     }
-}
\ No newline at end of file
+}
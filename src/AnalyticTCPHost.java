@@ -1,14 +1,26 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AnalyticTCPHost extends AnalyticHost {
 
+    public static final int CONNECT_TIMEOUT = 1000;
+    static final int MAX_RECORDED_CONNECTIONS = 100000;
+
     ServerSocket serverSocket;
     Socket clientSocket;
+    Socket activeSocket;
     String remoteHost;
     OutputStream out;
     InputStream in;
@@ -23,11 +35,21 @@ public class AnalyticTCPHost extends AnalyticHost {
 
     public void connectToRemoteHost(String remoteHost) throws IOException {
         this.remoteHost = remoteHost;
-        this.clientSocket = new Socket(remoteHost, PORT);
+        this.clientSocket = createClientSocket(remoteHost);
+        this.activeSocket = clientSocket;
         this.out = this.clientSocket.getOutputStream();
         this.in = this.clientSocket.getInputStream();
     }
 
+    /* Opens the connection to the remote host's server; subclasses may layer other transports over TCP here */
+    protected Socket createClientSocket(String remoteHost) throws IOException {
+        return new Socket(remoteHost, PORT);
+    }
+
+    protected ServerSocket createServerSocket() throws IOException {
+        return new ServerSocket(PORT);
+    }
+
     @Override
     public void disconnectFromRemoteHost() throws IOException {
         byte[] header = buildHeader(CLOSE_CONNECTION, 0, 0);
@@ -47,6 +69,16 @@ public class AnalyticTCPHost extends AnalyticHost {
 
         this.clientSocket.close();
         this.clientSocket = null;
+        this.activeSocket = null;
+    }
+
+    @Override
+    public void setReadTimeout(int timeout) throws IOException {
+        if (activeSocket == null) {
+            System.out.println("No socket to set a timeout on");
+            throw new IOException();
+        }
+        activeSocket.setSoTimeout(timeout);
     }
 
     @Override
@@ -88,11 +120,17 @@ public class AnalyticTCPHost extends AnalyticHost {
 
     @Override
     public void sendMsg(byte[] data) throws IOException {
+        sendMsg(data, 0, data.length);
+    }
+
+    @Override
+    public void sendMsg(byte[] data, int offset, int length) throws IOException {
         if(!outputConnectionIsActive()) {
             System.out.println("Output Connection is inactive");
             throw new IOException();
         }
-        out.write(data);
+        out.write(data, offset, length);
+        trace(PacketTracer.PACKET_SENT, 0, length);
     }
 
     @Override
@@ -106,28 +144,37 @@ public class AnalyticTCPHost extends AnalyticHost {
 
     @Override
     public void readMsg(byte[] bytes) throws IOException {
+        readMsg(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void readMsg(byte[] bytes, int offset, int length) throws IOException {
         if(!inputConnectionIsActive()) {
             System.out.println("Input Connection is inactive");
             throw new IOException();
         }
 
+        //each read is traced separately, so a stalled stream shows up as a gap between reads of one message
         int totalBytesReadIn = 0;
+        int readCount = 0;
         do {
-            int bytesReadIn = in.read(bytes);
+            //only the rest of this message is asked for, so bytes of the next one are left in the stream
+            int bytesReadIn = in.read(bytes, offset + totalBytesReadIn, length - totalBytesReadIn);
             if (bytesReadIn == -1) {
                 System.out.println("Error reading Message");
                 throw new IOException();
             }
             totalBytesReadIn += bytesReadIn;
+            trace(PacketTracer.PACKET_RECEIVED, readCount++, bytesReadIn);
         }
-        while(totalBytesReadIn < bytes.length);
+        while(totalBytesReadIn < length);
     }
 
     @Override
     public void startServer() throws IOException {
-        this.serverSocket = new ServerSocket(PORT);
+        this.serverSocket = createServerSocket();
 
-        System.out.println("Server running on port " + PORT);
+        System.out.println("Server running on port " + serverSocket.getLocalPort());
         while (listen(serverSocket));
         serverSocket.close();
         this.serverSocket = null;
@@ -135,9 +182,9 @@ public class AnalyticTCPHost extends AnalyticHost {
 
     @Override
     public void startServer(int maxNumberOfRequests) throws IOException {
-        this.serverSocket = new ServerSocket(PORT);
+        this.serverSocket = createServerSocket();
 
-        System.out.println("Server running on port " + PORT);
+        System.out.println("Server running on port " + serverSocket.getLocalPort());
         for (int i = 0; i < maxNumberOfRequests; i++){
             if (!listen(serverSocket)) {
                 break;
@@ -150,8 +197,10 @@ public class AnalyticTCPHost extends AnalyticHost {
     private boolean listen(ServerSocket serverSocket) {
         try {
             Socket client = serverSocket.accept();
+            this.activeSocket = client;
             this.out = client.getOutputStream();
             this.in = client.getInputStream();
+            resetProtocolVersion();
 
             while (reply());
         } catch(IOException e) {
@@ -164,49 +213,183 @@ public class AnalyticTCPHost extends AnalyticHost {
         return true;
     }
 
-    /* Measures the time it takes to fully transfer a message of a given size using smaller fixed-size packets */
-    public long packetTransferTest(int totalByteCount, int msgSize) throws IOException {
+    /* Opens short-lived connections to the remote host's accept server from the given number of concurrent connectors,
+     * until connectionCount connects have been attempted or maxDuration milliseconds have passed. Each connection
+     * measures how long connect() took, how long until the server's first bytes arrived, and, using the clock offset
+     * estimate, how long after connect() was called the server's accept() returned.
+     */
+    public ConnectionSetupResult connectionSetupTest(int connectionCount, int concurrency, long maxDuration, ClockOffsetEstimate clockOffset) throws IOException {
         if (!isConnectedToRemoteHost()) {
             System.out.println("No Connection Established with Remote Host");
             throw new IOException();
         }
 
-        long startTime, endTime;
-
-        //send header
-        byte[] header = buildHeader(ACK_REQUEST, totalByteCount, msgSize);
+        //send header and wait for the accept server to start
+        byte[] header = buildHeader(CONNECTION_SETUP_REQUEST, connectionCount, concurrency);
         try {
             sendMsg(header);
-        } catch(IOException e) {
-            System.out.println("An Error occurred sending header");
+            readACK();
+        } catch (IOException e) {
+            System.out.println("An Error occurred in starting the accept server");
             throw new IOException();
         }
 
-        //build message
-        byte[] msg = new byte[msgSize];
-        rand.nextBytes(msg);
+        InetSocketAddress acceptServerAddress = new InetSocketAddress(clientSocket.getInetAddress(), ConnectionAcceptServer.PORT);
+        AtomicInteger attemptCount = new AtomicInteger();
+        long deadline = System.nanoTime() + maxDuration * 1000000L;
+        int recordedPerConnector = Math.min(connectionCount, MAX_RECORDED_CONNECTIONS / concurrency);
 
-        //start time and begin sending messages
-        startTime = System.nanoTime();
-        for (int bytesSent = 0; bytesSent < totalByteCount; bytesSent += msgSize)
-        {
-            try {
-                sendMsg(msg);
-            } catch (IOException e) {
-                System.out.println("An Error occurred in sending the message");
-                throw new IOException();
+        ExecutorService connectors = Executors.newFixedThreadPool(concurrency);
+        ArrayList<Future<ConnectionSetupWorker>> futures = new ArrayList<Future<ConnectionSetupWorker>>();
+        long startTime = System.nanoTime();
+        for (int i = 0; i < concurrency; i++) {
+            ConnectionSetupWorker worker = new ConnectionSetupWorker(acceptServerAddress, connectionCount, attemptCount,
+                    deadline, recordedPerConnector, clockOffset);
+            futures.add(connectors.submit(worker));
+        }
+
+        ArrayList<ConnectionSetupWorker> workers = new ArrayList<ConnectionSetupWorker>();
+        try {
+            for (Future<ConnectionSetupWorker> future : futures) {
+                workers.add(future.get());
             }
+        } catch (Exception e) {
+            System.out.println("A connector failed");
+            throw new IOException();
+        } finally {
+            connectors.shutdown();
+        }
+        long endTime = System.nanoTime();
 
-            try {
-                readACK();
-            } catch (IOException e) {
-                System.out.println("An Error occurred in receiving ACK");
-                throw new IOException();
+        //stop the accept server and read how many connections it accepted
+        long acceptedCount;
+        try {
+            sendByte(ACK);
+            acceptedCount = readLong();
+        } catch (IOException e) {
+            System.out.println("An Error occurred in stopping the accept server");
+            throw new IOException();
+        }
+
+        int succeededCount = 0, failedCount = 0, timedOutCount = 0, recordedCount = 0;
+        for (ConnectionSetupWorker worker : workers) {
+            succeededCount += worker.succeededCount;
+            failedCount += worker.failedCount;
+            timedOutCount += worker.timedOutCount;
+            recordedCount += worker.recordedCount;
+        }
+
+        long[] connectLatencies = new long[recordedCount];
+        long[] firstByteLatencies = new long[recordedCount];
+        long[] acceptLatencies = new long[recordedCount];
+        int index = 0;
+        for (ConnectionSetupWorker worker : workers) {
+            System.arraycopy(worker.connectLatencies, 0, connectLatencies, index, worker.recordedCount);
+            System.arraycopy(worker.firstByteLatencies, 0, firstByteLatencies, index, worker.recordedCount);
+            System.arraycopy(worker.acceptLatencies, 0, acceptLatencies, index, worker.recordedCount);
+            index += worker.recordedCount;
+        }
+
+        return new ConnectionSetupResult(concurrency, succeededCount, failedCount, timedOutCount, acceptedCount,
+                endTime - startTime, new LatencyDistribution(connectLatencies, recordedCount),
+                new LatencyDistribution(firstByteLatencies, recordedCount), new LatencyDistribution(acceptLatencies, recordedCount));
+    }
+
+    /* One connector of the connection setup test. Connectors share the attempt counter, so together they make at most
+     * connectionCount attempts, and each keeps its own latency arrays so the hot loop takes no locks.
+     */
+    private static class ConnectionSetupWorker implements Callable<ConnectionSetupWorker> {
+        InetSocketAddress address;
+        int connectionCount;
+        AtomicInteger attemptCount;
+        long deadline;
+        ClockOffsetEstimate clockOffset;
+
+        long[] connectLatencies;
+        long[] firstByteLatencies;
+        long[] acceptLatencies;
+        int recordedCount;
+        int succeededCount;
+        int failedCount;
+        int timedOutCount;
+
+        ConnectionSetupWorker(InetSocketAddress address, int connectionCount, AtomicInteger attemptCount, long deadline,
+                              int recordCapacity, ClockOffsetEstimate clockOffset) {
+            this.address = address;
+            this.connectionCount = connectionCount;
+            this.attemptCount = attemptCount;
+            this.deadline = deadline;
+            this.clockOffset = clockOffset;
+            this.connectLatencies = new long[recordCapacity];
+            this.firstByteLatencies = new long[recordCapacity];
+            this.acceptLatencies = new long[recordCapacity];
+        }
+
+        @Override
+        public ConnectionSetupWorker call() {
+            byte[] acceptTimeAsBytes = ByteConverter.allocateLongByteArray();
+            while (System.nanoTime() < deadline && attemptCount.getAndIncrement() < connectionCount) {
+                Socket connection = new Socket();
+                try {
+                    long startWallTime = WallClock.nanoTime();
+                    long startTime = System.nanoTime();
+                    connection.connect(address, CONNECT_TIMEOUT);
+                    long connectedTime = System.nanoTime();
+
+                    connection.setSoTimeout(CONNECT_TIMEOUT);
+                    InputStream connectionIn = connection.getInputStream();
+                    for (int bytesReadIn = 0; bytesReadIn < acceptTimeAsBytes.length; ) {
+                        int count = connectionIn.read(acceptTimeAsBytes, bytesReadIn, acceptTimeAsBytes.length - bytesReadIn);
+                        if (count == -1) {
+                            throw new IOException();
+                        }
+                        bytesReadIn += count;
+                    }
+                    long firstByteTime = System.nanoTime();
+
+                    succeededCount++;
+                    if (recordedCount < connectLatencies.length) {
+                        long acceptTime = ByteConverter.byteArrayToLong(acceptTimeAsBytes);
+                        connectLatencies[recordedCount] = connectedTime - startTime;
+                        firstByteLatencies[recordedCount] = firstByteTime - startTime;
+                        acceptLatencies[recordedCount] = acceptTime - startWallTime - clockOffset.getOffset(startWallTime);
+                        recordedCount++;
+                    }
+                } catch (SocketTimeoutException e) {
+                    timedOutCount++;
+                } catch (IOException e) {
+                    failedCount++;
+                } finally {
+                    try {
+                        connection.close();
+                    } catch (IOException ignored) {
+
+                    }
+                }
             }
+            return this;
         }
-        endTime = System.nanoTime();
+    }
 
-        return endTime - startTime;
+    /* Runs the accept server for the connection setup test until the client signals that it has finished */
+    @Override
+    protected boolean replyToExtendedRequest(int requestCode, int totalByteCount, int msgSize) throws IOException {
+        if (requestCode != CONNECTION_SETUP_REQUEST) {
+            return super.replyToExtendedRequest(requestCode, totalByteCount, msgSize);
+        }
+
+        ConnectionAcceptServer acceptServer = new ConnectionAcceptServer();
+        try {
+            acceptServer.start();
+            sendByte(ACK);
+            readACK();
+            sendLong(acceptServer.stop());
+        } catch (IOException e) {
+            System.out.println("Failed to Respond to Connection Setup Request");
+            acceptServer.stop();
+            throw new IOException();
+        }
+        return true;
     }
 
     @Override
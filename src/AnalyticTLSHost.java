@@ -0,0 +1,197 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+
+/* A TCP host whose connection is wrapped in TLS with a single cipher suite, so the echo and throughput tests measure
+ * the cost of encryption and record framing against the plaintext TCP results. It also measures full and resumed
+ * handshake latency against a separate accept server.
+ */
+public class AnalyticTLSHost extends AnalyticTCPHost {
+
+    public static final int TLS_PORT = PORT + 2;
+    public static final int HANDSHAKE_PORT = PORT + 3;
+    public static final String[] CIPHER_SUITES = {
+            "TLS_AES_128_GCM_SHA256",
+            "TLS_AES_256_GCM_SHA384",
+            "TLS_CHACHA20_POLY1305_SHA256",
+            "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256",
+            "TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384"
+    };
+
+    String cipherSuite;
+    SSLContext context;
+
+    /* Creates a server host that accepts any of the supported cipher suites */
+    public AnalyticTLSHost() {
+        super();
+        this.cipherSuite = null;
+    }
+
+    /* Creates a client host that offers only the given cipher suite */
+    public AnalyticTLSHost(String cipherSuite) {
+        super();
+        this.cipherSuite = cipherSuite;
+    }
+
+    /* Returns the cipher suites from CIPHER_SUITES that this JVM can negotiate */
+    public static ArrayList<String> getSupportedCipherSuites() throws IOException {
+        List<String> supportedSuites;
+        try {
+            supportedSuites = Arrays.asList(SSLContext.getDefault().getSupportedSSLParameters().getCipherSuites());
+        } catch (NoSuchAlgorithmException e) {
+            System.out.println("TLS is not available");
+            throw new IOException();
+        }
+
+        ArrayList<String> cipherSuites = new ArrayList<String>();
+        for (String cipherSuite : CIPHER_SUITES) {
+            if (supportedSuites.contains(cipherSuite)) {
+                cipherSuites.add(cipherSuite);
+            }
+        }
+        return cipherSuites;
+    }
+
+    @Override
+    protected Socket createClientSocket(String remoteHost) throws IOException {
+        this.context = SelfSignedTLSContext.createClientContext();
+        SSLSocket socket = createHandshakeSocket(context);
+        socket.connect(new InetSocketAddress(remoteHost, TLS_PORT));
+        socket.startHandshake();
+        return socket;
+    }
+
+    @Override
+    protected ServerSocket createServerSocket() throws IOException {
+        return createServerSocket(TLS_PORT);
+    }
+
+    private ServerSocket createServerSocket(int port) throws IOException {
+        if (context == null) {
+            this.context = SelfSignedTLSContext.createServerContext();
+        }
+        SSLServerSocket socket = (SSLServerSocket)context.getServerSocketFactory().createServerSocket(port, ConnectionAcceptServer.BACKLOG);
+        socket.setEnabledCipherSuites(getSupportedCipherSuites().toArray(new String[0]));
+        socket.setEnabledProtocols(new String[]{"TLSv1.3", "TLSv1.2"});
+        return socket;
+    }
+
+    private SSLSocket createHandshakeSocket(SSLContext context) throws IOException {
+        SSLSocket socket = (SSLSocket)context.getSocketFactory().createSocket();
+        socket.setEnabledCipherSuites(new String[]{cipherSuite});
+        socket.setEnabledProtocols(new String[]{getProtocolVersion(cipherSuite)});
+        return socket;
+    }
+
+    /* TLS 1.3 suites have no key exchange or authentication in their names */
+    private static String getProtocolVersion(String cipherSuite) {
+        return cipherSuite.startsWith("TLS_ECDHE") || cipherSuite.startsWith("TLS_DHE") || cipherSuite.startsWith("TLS_RSA")
+                ? "TLSv1.2" : "TLSv1.3";
+    }
+
+    /* Measures the handshake latency of the given number of new connections to the remote host's handshake server.
+     * With resume set, every connection shares one session cache so that after a first, unmeasured connection each
+     * handshake can resume the previous session; otherwise each connection gets a fresh context and a full handshake.
+     * Only the handshake itself is timed, not the TCP connect.
+     */
+    public HandshakeResult handshakeTest(int connectionCount, boolean resume) throws IOException {
+        if (!isConnectedToRemoteHost()) {
+            System.out.println("No Connection Established with Remote Host");
+            throw new IOException();
+        }
+
+        //send header and wait for the handshake server to start
+        byte[] header = buildHeader(TLS_HANDSHAKE_REQUEST, connectionCount, resume ? 1 : 0);
+        try {
+            sendMsg(header);
+            readACK();
+        } catch (IOException e) {
+            System.out.println("An Error occurred in starting the handshake server");
+            throw new IOException();
+        }
+
+        InetSocketAddress address = new InetSocketAddress(clientSocket.getInetAddress(), HANDSHAKE_PORT);
+        long[] latencies = new long[connectionCount];
+        int resumedCount = 0;
+        SSLContext sharedContext = SelfSignedTLSContext.createClientContext();
+        if (resume) {
+            handshake(sharedContext, address);
+        }
+
+        for (int i = 0; i < connectionCount; i++) {
+            SSLContext handshakeContext = resume ? sharedContext : SelfSignedTLSContext.createClientContext();
+            long[] handshakeResult = handshake(handshakeContext, address);
+            latencies[i] = handshakeResult[0];
+            resumedCount += handshakeResult[1];
+        }
+
+        //stop the handshake server
+        try {
+            sendByte(ACK);
+            readLong();
+        } catch (IOException e) {
+            System.out.println("An Error occurred in stopping the handshake server");
+            throw new IOException();
+        }
+
+        return new HandshakeResult(new LatencyDistribution(latencies, connectionCount), resumedCount);
+    }
+
+    /* Returns the handshake time, and 1 if the session was resumed or 0 if it was new */
+    private long[] handshake(SSLContext handshakeContext, InetSocketAddress address) throws IOException {
+        try (SSLSocket socket = createHandshakeSocket(handshakeContext)) {
+            socket.connect(address, CONNECT_TIMEOUT);
+            socket.setSoTimeout(CONNECT_TIMEOUT);
+
+            long startWallTime = System.currentTimeMillis();
+            long startTime = System.nanoTime();
+            socket.startHandshake();
+            long endTime = System.nanoTime();
+
+            //read the server's first bytes, which also delivers any session ticket for the next resumption
+            InputStream socketIn = socket.getInputStream();
+            for (int i = 0; i < LONG_BYTE_SIZE; i++) {
+                if (socketIn.read() == -1) {
+                    break;
+                }
+            }
+
+            boolean resumed = socket.getSession().getCreationTime() < startWallTime;
+            return new long[]{endTime - startTime, resumed ? 1 : 0};
+        }
+    }
+
+    @Override
+    protected boolean replyToExtendedRequest(int requestCode, int totalByteCount, int msgSize) throws IOException {
+        if (requestCode != TLS_HANDSHAKE_REQUEST) {
+            return super.replyToExtendedRequest(requestCode, totalByteCount, msgSize);
+        }
+
+        ConnectionAcceptServer handshakeServer = new ConnectionAcceptServer(createServerSocket(HANDSHAKE_PORT));
+        try {
+            handshakeServer.start();
+            sendByte(ACK);
+            readACK();
+            sendLong(handshakeServer.stop());
+        } catch (IOException e) {
+            System.out.println("Failed to Respond to TLS Handshake Request");
+            handshakeServer.stop();
+            throw new IOException();
+        }
+        return true;
+    }
+
+    @Override
+    public String getProtocolString() {
+        return cipherSuite == null ? "TLS" : "TLS " + cipherSuite;
+    }
+}
@@ -1,5 +1,6 @@
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 public class AnalyticUDPHost extends AnalyticHost {
@@ -8,12 +9,21 @@ public class AnalyticUDPHost extends AnalyticHost {
     public final static int MAX_PAYLOAD_SIZE = MAX_MSG_SIZE - PACKET_NUMBER_SIZE;
     public final static int LARGE_MESSAGE_SIZE = 64 * (int)Math.pow(2, 10);
     public final static int NEXT_PACKET_TIMEOUT = 10;
+    public final static int MAX_DATAGRAM_SIZE = 65507;
+    public final static int PROBE_HEADER_SIZE = INTEGER_BYTE_SIZE + (Long.SIZE / Byte.SIZE);
+    public final static int PROBE_STREAM_TIMEOUT = 1000;
+    public final static int PACING_BURST_PACKETS = 4;
 
     DatagramSocket socket;
     InetAddress remoteAddress;
     int clientPort;
+    int readTimeout;
+    boolean sessionInterrupted;
     int packetsReceived;
     int earlyTimeoutCount;
+    long lastProbeStreamSendTime;
+    int fecBlockSize;
+    ForwardErrorCorrectionStatistics fecStatistics = new ForwardErrorCorrectionStatistics();
 
     public AnalyticUDPHost()
     {
@@ -23,23 +33,39 @@ public class AnalyticUDPHost extends AnalyticHost {
     }
 
     public void connectToClient() throws Exception {
-        this.packetsReceived = 0;
-        this.earlyTimeoutCount = 0;
+        this.readTimeout = 0;
         this.socket = new DatagramSocket(PORT);
 
         byte[] data = new byte[1];
         DatagramPacket packet = new DatagramPacket(data, data.length);
 
         socket.receive(packet);
+        startSession(packet);
+    }
+
+    /* Makes the sender of the given datagram the client, dropping any session held with a previous client */
+    private void startSession(DatagramPacket packet) {
+        this.packetsReceived = 0;
+        this.earlyTimeoutCount = 0;
+        this.fecBlockSize = 0;
         this.remoteAddress = packet.getAddress();
         this.clientPort = packet.getPort();
+        resetProtocolVersion();
+    }
+
+    /* Returns true if the datagram was sent by a client other than the one this server holds a session with */
+    private boolean isFromNewClient(DatagramPacket packet) {
+        return clientPort != -1 && (packet.getPort() != clientPort || !packet.getAddress().equals(remoteAddress));
     }
 
     public void connectToServer(String hostName) throws Exception {
+        this.readTimeout = 0;
         this.packetsReceived = 0;
         this.earlyTimeoutCount = 0;
+        this.fecBlockSize = 0;
         this.socket = new DatagramSocket();
         this.remoteAddress = InetAddress.getByName(hostName);
+        resetProtocolVersion();
 
         sendByte(ACK);
     }
@@ -61,6 +87,16 @@ public class AnalyticUDPHost extends AnalyticHost {
         this.earlyTimeoutCount = 0;
     }
 
+    @Override
+    public void setReadTimeout(int timeout) throws IOException {
+        if (socket == null) {
+            System.out.println("No socket to set a timeout on");
+            throw new IOException();
+        }
+        socket.setSoTimeout(timeout);
+        this.readTimeout = timeout;
+    }
+
     @Override
     public void sendByte(int data) throws IOException {
         byte[] bytePacket = new byte[1];
@@ -74,56 +110,74 @@ public class AnalyticUDPHost extends AnalyticHost {
      */
     @Override
     public void sendMsg(byte[] data) throws IOException {
+        sendMsg(data, 0, data.length);
+    }
+
+    @Override
+    public void sendMsg(byte[] data, int offset, int length) throws IOException {
         if(!outputConnectionIsActive()) {
             System.out.println("Output Connection is inactive");
             throw new IOException();
         }
         int port = clientPort != -1 ? clientPort : PORT;
 
-        if (data.length >= LARGE_MESSAGE_SIZE) {
-            sendLargeMsg(data, port);
+        if (length >= LARGE_MESSAGE_SIZE) {
+            sendLargeMsg(data, offset, length, port);
         }
         else {
-            int packetCount = (int)Math.ceil((data.length * 1.0) / MAX_MSG_SIZE );
+            int packetCount = (int)Math.ceil((length * 1.0) / MAX_MSG_SIZE );
             int lastPacketNumber = packetCount - 1;
-            for (int sentBytes = 0, packetNumber = 0; sentBytes < data.length; sentBytes += MAX_MSG_SIZE, packetNumber++) {
-                int msgSize = packetNumber != lastPacketNumber ? MAX_MSG_SIZE : data.length - sentBytes;
-                byte[] bytePacket = Arrays.copyOfRange(data, sentBytes, sentBytes + msgSize);
-                DatagramPacket packet = new DatagramPacket(bytePacket, bytePacket.length, remoteAddress, port);
+            for (int sentBytes = 0, packetNumber = 0; sentBytes < length; sentBytes += MAX_MSG_SIZE, packetNumber++) {
+                int msgSize = packetNumber != lastPacketNumber ? MAX_MSG_SIZE : length - sentBytes;
+                DatagramPacket packet = new DatagramPacket(data, offset + sentBytes, msgSize, remoteAddress, port);
                 socket.send(packet);
             }
         }
     }
 
-    private void sendLargeMsg(byte[] data, int port) throws IOException {
-        int packetCount = (int)Math.ceil((data.length * 1.0) / MAX_PAYLOAD_SIZE );
+    /* With forward error correction on, the first round follows every block of fecBlockSize packets with a parity packet
+     * holding their XOR, numbered packetCount plus the block's index. The receiver can rebuild any single packet lost
+     * from a block without asking for it again. Parity packets are not retransmitted.
+     */
+    private void sendLargeMsg(byte[] data, int offset, int length, int port) throws IOException {
+        int packetCount = (int)Math.ceil((length * 1.0) / MAX_PAYLOAD_SIZE );
         ArrayList<Integer> packetsPending = new ArrayList<Integer>();
         for (int i = 0; i < packetCount; i++) {
             packetsPending.add(i);
         }
 
         int lastPacketNumber = packetCount - 1;
-        int lastPayloadSize = data.length % MAX_PAYLOAD_SIZE;
+        int lastPayloadSize = length % MAX_PAYLOAD_SIZE;
         lastPayloadSize = lastPayloadSize > 0 ? lastPayloadSize : MAX_PAYLOAD_SIZE;
+        trace(PacketTracer.MESSAGE_SEND_START, packetCount, length);
 
+        byte[] parity = fecBlockSize > 0 ? new byte[MAX_PAYLOAD_SIZE] : null;
+        boolean firstRound = true;
         while (packetsPending.size() > 0) {
+            int eventType = firstRound ? PacketTracer.PACKET_SENT : PacketTracer.PACKET_RETRANSMITTED;
             for (int packetNumber : packetsPending) {
 
-                //pull the bytes to be sent in this packet from the msg data at large
+                //adds the packet number to the front of the bytes to be sent in this packet
                 int msgSize = packetNumber != lastPacketNumber ? MAX_PAYLOAD_SIZE : lastPayloadSize;
-                byte[] msg = new byte[msgSize];
-                System.arraycopy(data, packetNumber * MAX_PAYLOAD_SIZE, msg, 0, msgSize);
-
-                //adds the packet number to the front of the message
                 byte[] bytePacket = new byte[msgSize + PACKET_NUMBER_SIZE];
                 byte[] packetNumberAsBytes = ByteConverter.intToByteArray(packetNumber);
                 System.arraycopy(packetNumberAsBytes, 0, bytePacket, 0, PACKET_NUMBER_SIZE);
-                System.arraycopy(msg, 0, bytePacket, PACKET_NUMBER_SIZE, msgSize);
+                System.arraycopy(data, offset + packetNumber * MAX_PAYLOAD_SIZE, bytePacket, PACKET_NUMBER_SIZE, msgSize);
 
                 //send the packet
                 DatagramPacket packet = new DatagramPacket(bytePacket, bytePacket.length, remoteAddress, port);
                 socket.send(packet);
+                trace(eventType, packetNumber, bytePacket.length);
+
+                if (firstRound && parity != null) {
+                    xorInto(parity, bytePacket, PACKET_NUMBER_SIZE, msgSize);
+                    if ((packetNumber + 1) % fecBlockSize == 0 || packetNumber == lastPacketNumber) {
+                        sendParity(parity, packetCount + packetNumber / fecBlockSize, port);
+                        Arrays.fill(parity, (byte)0);
+                    }
+                }
             }
+            firstRound = false;
 
             //read in the number of packets that need to be resent
             byte[] resendPacketCountAsBytes = new byte[INTEGER_BYTE_SIZE];
@@ -131,6 +185,7 @@ public class AnalyticUDPHost extends AnalyticHost {
 
             int resendPacketCount = ByteConverter.byteArrayToInt(resendPacketCountAsBytes);
             if (resendPacketCount == 0) {
+                trace(PacketTracer.MESSAGE_COMPLETE, packetCount, length);
                 byte[] endOfMsg = ByteConverter.intToByteArray(END_OF_TRANSMISSION);
                 sendMsg(endOfMsg);
                 break;
@@ -139,10 +194,28 @@ public class AnalyticUDPHost extends AnalyticHost {
                 //read in the list of packet numbers that need to be resent
                 byte[] resendPacketArray = new byte[resendPacketCount * INTEGER_BYTE_SIZE];
                 readMsg(resendPacketArray);
+                trace(PacketTracer.NACK_RECEIVED, resendPacketCount, resendPacketArray.length);
+                packetsPending = ByteConverter.byteArrayToIntList(resendPacketArray);
             }
         }
     }
 
+    private void sendParity(byte[] parity, int parityNumber, int port) throws IOException {
+        byte[] bytePacket = new byte[MAX_MSG_SIZE];
+        System.arraycopy(ByteConverter.intToByteArray(parityNumber), 0, bytePacket, 0, PACKET_NUMBER_SIZE);
+        System.arraycopy(parity, 0, bytePacket, PACKET_NUMBER_SIZE, MAX_PAYLOAD_SIZE);
+
+        DatagramPacket packet = new DatagramPacket(bytePacket, bytePacket.length, remoteAddress, port);
+        socket.send(packet);
+        trace(PacketTracer.PARITY_SENT, parityNumber, bytePacket.length);
+    }
+
+    private static void xorInto(byte[] parity, byte[] payload, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            parity[i] ^= payload[offset + i];
+        }
+    }
+
     @Override
     public int readByte() throws IOException {
         byte[] data = new byte[1];
@@ -152,30 +225,33 @@ public class AnalyticUDPHost extends AnalyticHost {
 
     @Override
     public void readMsg(byte[] data) throws IOException {
+        readMsg(data, 0, data.length);
+    }
+
+    @Override
+    public void readMsg(byte[] data, int offset, int length) throws IOException {
         if(!inputConnectionIsActive()) {
             System.out.println("Input Connection is inactive");
             throw new IOException();
         }
 
-        if (data.length >= LARGE_MESSAGE_SIZE) {
-            readLargeMsg(data);
+        if (length >= LARGE_MESSAGE_SIZE) {
+            readLargeMsg(data, offset, length);
         }
         else {
-            //split data into packets and send
-            int packetCount = (int)Math.ceil((data.length * 1.0) / MAX_MSG_SIZE );
+            //read each packet straight into its place in the data array
+            int packetCount = (int)Math.ceil((length * 1.0) / MAX_MSG_SIZE );
             int lastPacketNumber = packetCount - 1;
-            for (int readBytes = 0, packetNumber = 0; readBytes < data.length; readBytes += MAX_MSG_SIZE, packetNumber++) {
-                int msgSize = packetNumber != lastPacketNumber ? MAX_MSG_SIZE : data.length - readBytes;
-                byte[] bytePacket = new byte[msgSize];
-                DatagramPacket packet = new DatagramPacket(bytePacket, bytePacket.length);
+            for (int readBytes = 0, packetNumber = 0; readBytes < length; readBytes += MAX_MSG_SIZE, packetNumber++) {
+                int msgSize = packetNumber != lastPacketNumber ? MAX_MSG_SIZE : length - readBytes;
+                DatagramPacket packet = new DatagramPacket(data, offset + readBytes, msgSize);
                 socket.receive(packet);
-                System.arraycopy(bytePacket, 0, data, readBytes, msgSize);
             }
         }
     }
 
-    private void readLargeMsg(byte[] data) throws IOException {
-        int packetCount = (int)Math.ceil((data.length * 1.0)/ MAX_PAYLOAD_SIZE);
+    private void readLargeMsg(byte[] data, int offset, int length) throws IOException {
+        int packetCount = (int)Math.ceil((length * 1.0)/ MAX_PAYLOAD_SIZE);
 
         ArrayList<Integer> packetsPending = new ArrayList<Integer>();
         for (int i = 0; i < packetCount; i++) {
@@ -183,49 +259,112 @@ public class AnalyticUDPHost extends AnalyticHost {
         }
 
         int lastPacketNumber = packetCount - 1;
-        int lastPayloadSize = data.length % MAX_PAYLOAD_SIZE;
+        int lastPayloadSize = length % MAX_PAYLOAD_SIZE;
         lastPayloadSize = lastPayloadSize > 0 ? lastPayloadSize : MAX_PAYLOAD_SIZE;
-
+        trace(PacketTracer.MESSAGE_RECEIVE_START, packetCount, length);
+
+        //parity packets are numbered after the data packets, one per block, and each is kept until its block is complete
+        int blockCount = fecBlockSize > 0 ? (packetCount + fecBlockSize - 1) / fecBlockSize : 0;
+        byte[][] parities = new byte[blockCount][];
+        int[] blockMissingCounts = new int[blockCount];
+        for (int block = 0; block < blockCount; block++) {
+            blockMissingCounts[block] = Math.min(fecBlockSize, packetCount - block * fecBlockSize);
+        }
+        boolean[] received = new boolean[packetCount];
+        int rounds = 0;
+        int recoveredCount = 0;
+
+        //every packet is received into the same buffer, as its payload is copied out before the next one arrives
+        byte[] wrappedMsg = new byte[MAX_MSG_SIZE];
+        DatagramPacket packet = new DatagramPacket(wrappedMsg, wrappedMsg.length);
+        boolean packetsArriving = false;
         while (packetsPending.size() > 0) {
             try {
 
                 //receive packet
-                byte[] wrappedMsg = new byte[MAX_MSG_SIZE];
                 int packetNumber;
-                DatagramPacket packet = new DatagramPacket(wrappedMsg, wrappedMsg.length);
+                packet.setLength(wrappedMsg.length);
                 socket.receive(packet);
+                if (isFromNewClient(packet)) {
+                    System.out.println("Starting a new session with " + packet.getAddress() + ":" + packet.getPort());
+                    this.socket.setSoTimeout(readTimeout);
+                    startSession(packet);
+                    this.sessionInterrupted = true;
+                    throw new IOException();
+                }
+                this.socket.setSoTimeout(NEXT_PACKET_TIMEOUT);
+                packetsArriving = true;
+                this.packetsReceived++;
 
-                //extract packet number and msg data
+                //extract packet number, ignoring anything that is not part of this message
                 packetNumber = getPacketNumber(wrappedMsg);
-                int msgSize = packetNumber != lastPacketNumber ? MAX_PAYLOAD_SIZE : lastPayloadSize;
-                byte[] msg = getMsgData(wrappedMsg, msgSize);
-
-                //copy message payload to data array
-                System.arraycopy(msg, 0, data, packetNumber * (MAX_PAYLOAD_SIZE), msg.length);
+                if (packetNumber < 0 || packetNumber >= packetCount + blockCount) {
+                    continue;
+                }
 
-                //remove packet from pending list
-                int packetNumberIndex = packetsPending.indexOf(packetNumber);
-                try {
-                    packetsPending.remove(packetNumberIndex);
-                } catch (IndexOutOfBoundsException ignored) {
+                int block;
+                if (packetNumber >= packetCount) {
+                    block = packetNumber - packetCount;
+                    if (parities[block] != null) {
+                        continue;
+                    }
+                    parities[block] = getMsgData(wrappedMsg, MAX_PAYLOAD_SIZE);
+                    trace(PacketTracer.PARITY_RECEIVED, packetNumber, packet.getLength());
+                }
+                else if (received[packetNumber]) {
 
                     //we ignore repeat packets that were sent because the socket timed out before the packets arrived
+                    trace(PacketTracer.PACKET_DUPLICATE, packetNumber, packet.getLength());
+                    continue;
+                }
+                else {
+                    //copy message payload to data array and remove packet from pending list
+                    int msgSize = packetNumber != lastPacketNumber ? MAX_PAYLOAD_SIZE : lastPayloadSize;
+                    System.arraycopy(wrappedMsg, PACKET_NUMBER_SIZE, data, offset + packetNumber * MAX_PAYLOAD_SIZE, msgSize);
+                    received[packetNumber] = true;
+                    packetsPending.remove(Integer.valueOf(packetNumber));
+                    trace(PacketTracer.PACKET_RECEIVED, packetNumber, packet.getLength());
+
+                    if (blockCount == 0) {
+                        continue;
+                    }
+                    block = packetNumber / fecBlockSize;
+                    blockMissingCounts[block]--;
                 }
 
-                this.socket.setSoTimeout(NEXT_PACKET_TIMEOUT);
-                this.packetsReceived++;
+                //once all but one of a block's packets and its parity are in, the last one is their XOR
+                if (blockMissingCounts[block] == 1 && parities[block] != null) {
+                    int recoveredPacketNumber = recoverFromParity(data, offset, received, parities[block], block, packetCount, lastPayloadSize);
+                    received[recoveredPacketNumber] = true;
+                    packetsPending.remove(Integer.valueOf(recoveredPacketNumber));
+                    blockMissingCounts[block] = 0;
+                    recoveredCount++;
+                    trace(PacketTracer.PACKET_RECOVERED, recoveredPacketNumber, MAX_PAYLOAD_SIZE);
+                }
             }
             catch (SocketTimeoutException e) {
+
+                //nothing arrived within the caller's read timeout, as opposed to a gap in the packets
+                if (!packetsArriving) {
+                    throw e;
+                }
+
                 //send a message containing the number of packets to be resent
                 int packetRequestCount = packetsPending.size();
+                trace(PacketTracer.NACK_SENT, packetRequestCount, packetRequestCount * INTEGER_BYTE_SIZE);
                 sendMsg(ByteConverter.intToByteArray(packetRequestCount));
+                rounds++;
 
                 //send out a message containing a list of all requested packets to be resent
                 sendMsg(ByteConverter.intListToByteArray(packetsPending));
-                this.socket.setSoTimeout(0);
+                this.socket.setSoTimeout(readTimeout);
+                packetsArriving = false;
             }
         }
 
+        trace(PacketTracer.MESSAGE_COMPLETE, packetCount, length);
+        fecStatistics.recordMessage(rounds, recoveredCount);
+
         //send a message indicating that no more packets need to be resent
         int packageRequestCount = 0;
         try {
@@ -243,7 +382,27 @@ public class AnalyticUDPHost extends AnalyticHost {
             System.out.println("Failed to end message transmission successfully");
         }
 
-        this.socket.setSoTimeout(0);
+        this.socket.setSoTimeout(readTimeout);
+    }
+
+    /* Rebuilds the one packet of the block that has not been received and returns its number */
+    private int recoverFromParity(byte[] data, int offset, boolean[] received, byte[] parity, int block, int packetCount, int lastPayloadSize) {
+        int firstPacketNumber = block * fecBlockSize;
+        int endPacketNumber = Math.min(firstPacketNumber + fecBlockSize, packetCount);
+        int missingPacketNumber = -1;
+        for (int packetNumber = firstPacketNumber; packetNumber < endPacketNumber; packetNumber++) {
+            int msgSize = packetNumber != packetCount - 1 ? MAX_PAYLOAD_SIZE : lastPayloadSize;
+            if (received[packetNumber]) {
+                xorInto(parity, data, offset + packetNumber * MAX_PAYLOAD_SIZE, msgSize);
+            }
+            else {
+                missingPacketNumber = packetNumber;
+            }
+        }
+
+        int msgSize = missingPacketNumber != packetCount - 1 ? MAX_PAYLOAD_SIZE : lastPayloadSize;
+        System.arraycopy(parity, 0, data, offset + missingPacketNumber * MAX_PAYLOAD_SIZE, msgSize);
+        return missingPacketNumber;
     }
 
     private int getPacketNumber(byte[] msg) {
@@ -253,7 +412,32 @@ public class AnalyticUDPHost extends AnalyticHost {
     }
 
     private byte[] getMsgData(byte[] msg, int payloadSize) {
-        return Arrays.copyOfRange(msg, PACKET_NUMBER_SIZE, payloadSize);
+        return Arrays.copyOfRange(msg, PACKET_NUMBER_SIZE, PACKET_NUMBER_SIZE + payloadSize);
+    }
+
+    /* Headers arrive one per datagram, so each datagram is parsed whole at its actual length, and whatever part of a
+     * frame it leaves unparsed is dropped at the datagram boundary rather than joined to the next datagram. A datagram
+     * from a new client, such as a monitoring daemon reconnecting after a failed probe, starts a new session: its hello
+     * is consumed, and any other datagram is parsed as the session's first frame.
+     */
+    @Override
+    protected void readHeaderBytes() throws IOException {
+        if(!inputConnectionIsActive()) {
+            System.out.println("Input Connection is inactive");
+            throw new IOException();
+        }
+
+        byte[] buffer = headerBuffer.array();
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        socket.receive(packet);
+        if (isFromNewClient(packet)) {
+            System.out.println("Starting a new session with " + packet.getAddress() + ":" + packet.getPort());
+            startSession(packet);
+            if (packet.getLength() == 1 && buffer[0] == ACK) {
+                return;
+            }
+        }
+        headerBuffer.clear().limit(packet.getLength());
     }
 
     @Override
@@ -305,14 +489,191 @@ public class AnalyticUDPHost extends AnalyticHost {
         System.out.println("Connected to client");
         try {
             for (int i = 0; i < maxNumberOfRequests; i++) {
-               while(reply());
+               while(replyToSession());
             }
         } catch (Exception e) {
             System.out.println("A Server Exception occurred");
             e.printStackTrace();
             throw new IOException();
+        } finally {
+
+            //the port must be free again for the next session
+            disconnectFromRemoteHost();
         }
-        disconnectFromRemoteHost();
+    }
+
+    /* Replies to one request. A request cut short by a new client starting a session is abandoned, and the new session
+     * is served in its place.
+     */
+    private boolean replyToSession() throws IOException {
+        this.sessionInterrupted = false;
+        try {
+            return reply();
+        } catch (IOException e) {
+            if (!sessionInterrupted) {
+                throw e;
+            }
+            return true;
+        }
+    }
+
+    /* Sends a fire-and-forget stream of sequence-numbered, timestamped probes at the given rate. Lost probes are not
+     * retransmitted; instead the remote host measures loss, reordering, duplicates and jitter and returns its findings.
+     */
+    public ProbeStreamStatistics probeStreamTest(int packetCount, int packetSize, int packetsPerSecond) throws IOException {
+        return probeStreamTest(packetCount, packetSize, TokenBucketPacer.packetsPerSecond(packetsPerSecond, PACING_BURST_PACKETS));
+    }
+
+    /* Sends a probe stream paced by the given token bucket, which may limit the stream's packets or bits per second */
+    public ProbeStreamStatistics probeStreamTest(int packetCount, int packetSize, TokenBucketPacer pacer) throws IOException {
+        if (!isConnectedToRemoteHost()) {
+            System.out.println("No Connection Established with Remote Host");
+            throw new IOException();
+        }
+        if (packetSize < PROBE_HEADER_SIZE || packetSize > MAX_DATAGRAM_SIZE) {
+            System.out.println("Probe size must be between " + PROBE_HEADER_SIZE + " and " + MAX_DATAGRAM_SIZE + " bytes");
+            throw new IOException();
+        }
+
+        //send header
+        byte[] header = buildHeader(PROBE_STREAM_REQUEST, packetCount, packetSize);
+        try {
+            sendMsg(header);
+        } catch (IOException e) {
+            System.out.println("Header Failed to Send");
+            throw new IOException();
+        }
+
+        //the bucket lets a sender that was delayed catch up with a short burst, so one slow send does not shift the stream
+        int port = clientPort != -1 ? clientPort : PORT;
+        byte[] probe = new byte[packetSize];
+        rand.nextBytes(probe);
+        DatagramPacket packet = new DatagramPacket(probe, probe.length, remoteAddress, port);
+        long startTime = System.nanoTime();
+        try {
+            for (int sequenceNumber = 0; sequenceNumber < packetCount; sequenceNumber++) {
+                pacer.acquire(packetSize);
+                ByteBuffer probeBuffer = ByteBuffer.wrap(probe);
+                probeBuffer.putInt(sequenceNumber);
+                probeBuffer.putLong(System.nanoTime());
+                socket.send(packet);
+            }
+        } catch (IOException e) {
+            System.out.println("An Error occurred in sending the probe stream");
+            throw new IOException();
+        }
+        this.lastProbeStreamSendTime = System.nanoTime() - startTime;
+
+        //read the receiver's results, which only include its goodput from protocol version 2 on
+        byte[] results = new byte[protocolVersion == PROTOCOL_VERSION_1 ? ProbeStreamStatistics.V1_SERIALIZED_SIZE : ProbeStreamStatistics.SERIALIZED_SIZE];
+        try {
+            readMsg(results);
+        } catch (IOException e) {
+            System.out.println("An Error occurred in reading the probe stream results");
+            throw new IOException();
+        }
+        return ProbeStreamStatistics.fromByteArray(results);
+    }
+
+    /* Sets the number of packets per parity packet on both hosts for large messages, or turns forward error correction
+     * off if blockSize is 0, so the overhead is 1/blockSize. Returns the statistics the remote host gathered as a receiver
+     * since the previous call, and resets them.
+     */
+    public ForwardErrorCorrectionStatistics setForwardErrorCorrection(int blockSize) throws IOException {
+        if (!isConnectedToRemoteHost()) {
+            System.out.println("No Connection Established with Remote Host");
+            throw new IOException();
+        }
+        if (protocolVersion == PROTOCOL_VERSION_1) {
+            System.out.println("The remote host does not support forward error correction");
+            throw new IOException();
+        }
+
+        byte[] header = buildHeader(FORWARD_ERROR_CORRECTION_REQUEST, blockSize, 0);
+        byte[] results = new byte[ForwardErrorCorrectionStatistics.SERIALIZED_SIZE];
+        try {
+            sendMsg(header);
+            readMsg(results);
+        } catch (IOException e) {
+            System.out.println("An Error occurred in configuring forward error correction");
+            throw new IOException();
+        }
+        this.fecBlockSize = blockSize;
+        return ForwardErrorCorrectionStatistics.fromByteArray(results);
+    }
+
+    /* Returns the statistics this host has gathered as a receiver of large messages */
+    public ForwardErrorCorrectionStatistics getForwardErrorCorrectionStatistics() {
+        return fecStatistics;
+    }
+
+    /* Lost packets of large messages are requested over the same socket the messages arrive on, which would interleave
+     * with the reverse direction's data, so UDP only measures the two directions one after the other.
+     */
+    @Override
+    public ArrayList<Long> fullDuplexThroughputTest(int totalByteCount, int msgSize) throws Exception {
+        System.out.println("The full-duplex throughput test needs a stream transport");
+        throw new IOException();
+    }
+
+    /* Returns how long the sender took to send the last probe stream, in nanoseconds */
+    public long getLastProbeStreamSendTime() {
+        return lastProbeStreamSendTime;
+    }
+
+    /* Receives probes until every expected probe has arrived or the stream has been idle for PROBE_STREAM_TIMEOUT */
+    private ProbeStreamStatistics receiveProbeStream(int packetCount, int packetSize) throws IOException {
+        ProbeStreamStatistics statistics = new ProbeStreamStatistics(packetCount);
+        byte[] probe = new byte[packetSize];
+        DatagramPacket packet = new DatagramPacket(probe, probe.length);
+
+        this.socket.setSoTimeout(PROBE_STREAM_TIMEOUT);
+        try {
+            while (statistics.getReceivedCount() < packetCount) {
+                packet.setLength(probe.length);
+                socket.receive(packet);
+                long arrivalTime = System.nanoTime();
+                if (packet.getLength() < PROBE_HEADER_SIZE || !packet.getAddress().equals(remoteAddress)) {
+                    continue;
+                }
+                ByteBuffer probeBuffer = ByteBuffer.wrap(probe);
+                statistics.recordArrival(probeBuffer.getInt(), probeBuffer.getLong(), arrivalTime, packet.getLength());
+            }
+        } catch (SocketTimeoutException ignored) {
+
+            //the remaining probes were lost
+        } finally {
+            this.socket.setSoTimeout(readTimeout);
+        }
+        return statistics;
+    }
+
+    @Override
+    protected boolean replyToExtendedRequest(int requestCode, int totalByteCount, int msgSize) throws IOException {
+        if (requestCode == FORWARD_ERROR_CORRECTION_REQUEST) {
+            try {
+                sendMsg(fecStatistics.toByteArray());
+            } catch (IOException e) {
+                System.out.println("Failed to Respond to Forward Error Correction Request");
+                throw new IOException();
+            }
+            fecStatistics.reset();
+            this.fecBlockSize = totalByteCount;
+            return true;
+        }
+        if (requestCode != PROBE_STREAM_REQUEST) {
+            return super.replyToExtendedRequest(requestCode, totalByteCount, msgSize);
+        }
+
+        ProbeStreamStatistics statistics = receiveProbeStream(totalByteCount, msgSize);
+        byte[] results = statistics.toByteArray();
+        try {
+            sendMsg(protocolVersion == PROTOCOL_VERSION_1 ? Arrays.copyOf(results, ProbeStreamStatistics.V1_SERIALIZED_SIZE) : results);
+        } catch (IOException e) {
+            System.out.println("Failed to Respond to Probe Stream Request");
+            throw new IOException();
+        }
+        return true;
     }
 
     @Override
@@ -0,0 +1,231 @@
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/* A host that talks over a Unix domain socket, for a kernel-only baseline of local IPC to compare with TCP loopback.
+ * The channel blocks like the TCP host's streams, so the two are compared on equal terms. Unix domain channels cannot
+ * time out a blocking read, so while a read timeout is set the channel is switched to non-blocking mode and waits on
+ * selectors instead. Reads and writes have separate selectors so that they can run on different threads.
+ */
+public class AnalyticUnixDomainHost extends AnalyticHost {
+
+    public static final Path DEFAULT_SOCKET_PATH = Paths.get(System.getProperty("java.io.tmpdir"), "network-analysis-" + PORT + ".sock");
+
+    Path socketPath;
+    ServerSocketChannel serverChannel;
+    SocketChannel channel;
+    Selector readSelector;
+    Selector writeSelector;
+    SelectionKey readKey;
+    SelectionKey writeKey;
+    int readTimeout;
+
+    public AnalyticUnixDomainHost() {
+        this(DEFAULT_SOCKET_PATH);
+    }
+
+    public AnalyticUnixDomainHost(Path socketPath) {
+        this.socketPath = socketPath;
+        this.serverChannel = null;
+        this.channel = null;
+        this.readTimeout = 0;
+        this.rand = new Random();
+    }
+
+    public void connectToServer() throws IOException {
+        SocketChannel serverConnection = SocketChannel.open(UnixDomainSocketAddress.of(socketPath));
+        useChannel(serverConnection);
+    }
+
+    private void useChannel(SocketChannel connection) throws IOException {
+        this.channel = connection;
+        this.readTimeout = 0;
+        resetProtocolVersion();
+    }
+
+    private void closeChannel() throws IOException {
+        if (readSelector != null) {
+            this.readSelector.close();
+            this.readSelector = null;
+            this.writeSelector.close();
+            this.writeSelector = null;
+        }
+        this.channel.close();
+        this.channel = null;
+    }
+
+    @Override
+    public void disconnectFromRemoteHost() throws IOException {
+        byte[] header = buildHeader(CLOSE_CONNECTION, 0, 0);
+        try {
+            sendMsg(header);
+        } catch (IOException e) {
+            System.out.println("Header Failed to Send");
+        }
+        closeChannel();
+    }
+
+    @Override
+    public void setReadTimeout(int timeout) throws IOException {
+        this.readTimeout = timeout;
+        if (channel == null || !channel.isOpen() || channel.isBlocking() == (timeout == 0)) {
+            return;
+        }
+
+        if (timeout != 0) {
+            if (readSelector == null) {
+                this.readSelector = Selector.open();
+                this.writeSelector = Selector.open();
+            }
+            channel.configureBlocking(false);
+            this.readKey = channel.register(readSelector, SelectionKey.OP_READ);
+            this.writeKey = channel.register(writeSelector, SelectionKey.OP_WRITE);
+        }
+        else {
+            //a channel cannot block again until its keys are deregistered, which happens on each selector's next select
+            readKey.cancel();
+            writeKey.cancel();
+            readSelector.selectNow();
+            writeSelector.selectNow();
+            channel.configureBlocking(true);
+        }
+    }
+
+    @Override
+    public boolean outputConnectionIsActive() {
+        return channel != null && channel.isOpen();
+    }
+
+    @Override
+    public boolean inputConnectionIsActive() {
+        return channel != null && channel.isOpen();
+    }
+
+    @Override
+    public void sendByte(int data) throws IOException {
+        sendMsg(new byte[]{(byte)data});
+    }
+
+    @Override
+    public void sendMsg(byte[] data) throws IOException {
+        sendMsg(data, 0, data.length);
+    }
+
+    @Override
+    public void sendMsg(byte[] data, int offset, int length) throws IOException {
+        if (!outputConnectionIsActive()) {
+            System.out.println("Output Connection is inactive");
+            throw new IOException();
+        }
+
+        //a write only comes up short while a read timeout has made the channel non-blocking
+        ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+        while (buffer.hasRemaining()) {
+            if (channel.write(buffer) == 0) {
+                writeSelector.select();
+                writeSelector.selectedKeys().clear();
+            }
+        }
+        trace(PacketTracer.PACKET_SENT, 0, length);
+    }
+
+    @Override
+    public int readByte() throws IOException {
+        byte[] data = new byte[1];
+        readMsg(data);
+        return data[0];
+    }
+
+    @Override
+    public void readMsg(byte[] bytes) throws IOException {
+        readMsg(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void readMsg(byte[] bytes, int offset, int length) throws IOException {
+        if (!inputConnectionIsActive()) {
+            System.out.println("Input Connection is inactive");
+            throw new IOException();
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+        int readCount = 0;
+        while (buffer.hasRemaining()) {
+            int bytesReadIn = channel.read(buffer);
+            if (bytesReadIn == -1) {
+                System.out.println("Error reading Message");
+                throw new IOException();
+            }
+            if (bytesReadIn > 0) {
+                trace(PacketTracer.PACKET_RECEIVED, readCount++, bytesReadIn);
+            }
+            if (bytesReadIn == 0) {
+                if (readSelector.select(readTimeout) == 0) {
+                    throw new SocketTimeoutException();
+                }
+                readSelector.selectedKeys().clear();
+            }
+        }
+    }
+
+    @Override
+    public void startServer() throws IOException {
+        bind();
+        while (listen());
+        unbind();
+    }
+
+    @Override
+    public void startServer(int maxNumberOfRequests) throws IOException {
+        bind();
+        for (int i = 0; i < maxNumberOfRequests; i++) {
+            if (!listen()) {
+                break;
+            }
+        }
+        unbind();
+    }
+
+    private void bind() throws IOException {
+        Files.deleteIfExists(socketPath);
+        this.serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        this.serverChannel.bind(UnixDomainSocketAddress.of(socketPath));
+        System.out.println("Server listening on " + socketPath);
+    }
+
+    private void unbind() throws IOException {
+        this.serverChannel.close();
+        this.serverChannel = null;
+        Files.deleteIfExists(socketPath);
+    }
+
+    private boolean listen() {
+        try {
+            useChannel(serverChannel.accept());
+            while (reply());
+            closeChannel();
+        } catch(IOException e) {
+            System.out.println("Server IO Exception occurred");
+            return false;
+        } catch (Exception e) {
+            System.out.println("A Server Exception occurred");
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String getProtocolString() {
+        return "Unix Domain Socket";
+    }
+}
@@ -0,0 +1,201 @@
+import java.util.ArrayList;
+
+/* Searches for the load at which a path saturates, using pipelined echo trials rather than a fixed grid of sizes. The
+ * offered load is raised along two axes in turn:
+ *   1. pipeline depth, at a fixed message size: the depth is doubled until a trial loses more than MAX_LOSS_RATE of its
+ *      requests or its 99th percentile latency exceeds P99_DEGRADATION_FACTOR times that of the unloaded path, then the
+ *      boundary is found by bisection. The first depth that stopped adding MIN_THROUGHPUT_GAIN of goodput is the knee.
+ *   2. message size, at the knee's depth: the size is doubled until goodput stops increasing or loss climbs. Latency
+ *      naturally grows with message size, so only loss marks a size as unsustainable.
+ * Both axes are searched in logarithmic steps, so a search runs at most a few dozen trials whatever the path's capacity.
+ * A trial that degrades or loses any request is run once more and keeps the better of its two runs, so it only counts as
+ * degraded if the repeat does too.
+ */
+public class CapacitySearch {
+
+    static final double MIN_THROUGHPUT_GAIN = 0.05;
+    static final double MAX_LOSS_RATE = 0.01;
+    static final double P99_DEGRADATION_FACTOR = 2.0;
+    static final int MAX_PIPELINE_DEPTH = 256;
+    static final int START_MSG_SIZE = 1024;
+    static final long TRIAL_BYTE_COUNT = 4 * 1024 * 1024;
+    static final int MIN_TRIAL_REQUESTS = 200;
+    static final int MAX_TRIAL_REQUESTS = 5000;
+
+    //the client writes a full pipeline before it reads, so the pipeline must fit in the socket buffers on the way
+    static final int MAX_IN_FLIGHT_BYTES = 256 * 1024;
+
+    AnalyticHost client;
+    int maxMsgSize;
+
+    ArrayList<Trial> trials;
+    Trial baseline;
+    Trial knee;
+    Trial degradation;
+
+    /* Searches over the given host's session, with messages no larger than maxMsgSize */
+    public CapacitySearch(AnalyticHost client, int maxMsgSize) {
+        this.client = client;
+        this.maxMsgSize = maxMsgSize;
+        this.trials = new ArrayList<Trial>();
+    }
+
+    public void run() throws Exception {
+        int msgSize = Math.min(START_MSG_SIZE, maxMsgSize);
+
+        //an unrecorded run first, so that warm-up does not inflate the baseline every other trial is judged against
+        client.pipelinedEchoTest(MIN_TRIAL_REQUESTS, msgSize, 1);
+        this.baseline = runTrial(msgSize, 1, true);
+
+        //ramp the pipeline depth until latency or loss degrades
+        Trial previous = baseline;
+        int healthyDepth = 1;
+        int unhealthyDepth = -1;
+        for (int depth = 2; depth <= MAX_PIPELINE_DEPTH && depth * msgSize <= MAX_IN_FLIGHT_BYTES; depth *= 2) {
+            Trial trial = runTrial(msgSize, depth, true);
+            if (!trial.isSustainable()) {
+                unhealthyDepth = depth;
+                this.degradation = trial;
+                break;
+            }
+            if (knee == null && trial.getGoodput() < previous.getGoodput() * (1 + MIN_THROUGHPUT_GAIN)) {
+                this.knee = previous;
+            }
+            healthyDepth = depth;
+            previous = trial;
+        }
+        if (knee == null) {
+            this.knee = previous;
+        }
+
+        //bisect between the last sustainable depth and the first that was not
+        if (unhealthyDepth != -1) {
+            while (unhealthyDepth - healthyDepth > 1) {
+                int depth = (healthyDepth + unhealthyDepth) / 2;
+                Trial trial = runTrial(msgSize, depth, true);
+                if (trial.isSustainable()) {
+                    healthyDepth = depth;
+                }
+                else {
+                    unhealthyDepth = depth;
+                    this.degradation = trial;
+                }
+            }
+        }
+
+        //ramp the message size at the knee's depth until goodput stops increasing
+        int depth = knee.getPipelineDepth();
+        previous = knee;
+        for (int size = msgSize * 2; size <= maxMsgSize && depth * size <= MAX_IN_FLIGHT_BYTES; size *= 2) {
+            Trial trial = runTrial(size, depth, false);
+            if (!trial.isSustainable() || trial.getGoodput() < previous.getGoodput() * (1 + MIN_THROUGHPUT_GAIN)) {
+                break;
+            }
+            this.knee = trial;
+            previous = trial;
+        }
+    }
+
+    private Trial runTrial(int msgSize, int pipelineDepth, boolean latencyBounded) throws Exception {
+        int requestCount = (int)Math.max(MIN_TRIAL_REQUESTS, Math.min(MAX_TRIAL_REQUESTS, TRIAL_BYTE_COUNT / msgSize));
+        System.out.println("Capacity Search Trial: " + msgSize + " Bytes at Depth " + pipelineDepth);
+
+        PipelinedEchoResult result = client.pipelinedEchoTest(requestCount, msgSize, pipelineDepth);
+        boolean sustainable = isSustainable(result, latencyBounded);
+
+        //a single scheduling stall is enough to move a tail percentile, and a single lost request holds its slot for the
+        //pipeline timeout, which skews goodput, so either must repeat before it counts
+        if (!sustainable || result.getLostCount() > 0) {
+            PipelinedEchoResult repeat = client.pipelinedEchoTest(requestCount, msgSize, pipelineDepth);
+            boolean repeatSustainable = isSustainable(repeat, latencyBounded);
+            if ((repeatSustainable && !sustainable)
+                    || (repeatSustainable == sustainable && repeat.getLostCount() < result.getLostCount())) {
+                result = repeat;
+                sustainable = repeatSustainable;
+            }
+        }
+
+        Trial trial = new Trial(msgSize, result, sustainable);
+        trials.add(trial);
+        return trial;
+    }
+
+    private boolean isSustainable(PipelinedEchoResult result, boolean latencyBounded) {
+        boolean sustainable = result.getLossRate() <= MAX_LOSS_RATE;
+        if (latencyBounded && baseline != null) {
+            sustainable &= result.getLatencies().getPercentile(99) <= baseline.getP99() * P99_DEGRADATION_FACTOR;
+        }
+        return sustainable;
+    }
+
+    public ArrayList<Trial> getTrials() {
+        return trials;
+    }
+
+    /* Returns the unloaded trial that the others' latency is compared against */
+    public Trial getBaseline() {
+        return baseline;
+    }
+
+    /* Returns the sustainable trial with the highest goodput */
+    public Trial getMaxSustainableTrial() {
+        Trial best = null;
+        for (Trial trial : trials) {
+            if (trial.isSustainable() && (best == null || trial.getGoodput() > best.getGoodput())) {
+                best = trial;
+            }
+        }
+        return best;
+    }
+
+    /* Returns the trial past which more load stopped adding goodput */
+    public Trial getKnee() {
+        return knee;
+    }
+
+    /* Returns the lightest trial whose latency or loss degraded, or null if none did within the search's limits */
+    public Trial getDegradation() {
+        return degradation;
+    }
+
+    public static class Trial {
+        int msgSize;
+        PipelinedEchoResult result;
+        boolean sustainable;
+
+        Trial(int msgSize, PipelinedEchoResult result, boolean sustainable) {
+            this.msgSize = msgSize;
+            this.result = result;
+            this.sustainable = sustainable;
+        }
+
+        public int getMsgSize() {
+            return msgSize;
+        }
+
+        public int getPipelineDepth() {
+            return result.getPipelineDepth();
+        }
+
+        public PipelinedEchoResult getResult() {
+            return result;
+        }
+
+        public boolean isSustainable() {
+            return sustainable;
+        }
+
+        /* Returns the bytes echoed per second in each direction */
+        public double getGoodput() {
+            return result.getOperationsPerSecond() * msgSize;
+        }
+
+        public double getLossRate() {
+            return result.getLossRate();
+        }
+
+        public long getP99() {
+            return result.getLatencies().getPercentile(99);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+import java.util.ArrayList;
+import java.util.Collections;
+
+/* An estimate of the offset and drift of the remote host's wall clock relative to ours, built from NTP-style exchanges.
+ * Each exchange records four timestamps: t1 when we send, t2 when the remote host receives, t3 when it replies and t4
+ * when we receive the reply. The sample with the smallest round-trip delay has the least queueing in it, so its offset
+ * is used as the estimate and half of its delay bounds the error. Drift is fitted over the least-delayed half of the
+ * samples, since queueing noise would otherwise dominate the slope.
+ */
+public class ClockOffsetEstimate {
+
+    long offset;
+    long errorBound;
+    double drift;
+    long referenceTime;
+
+    ArrayList<long[]> samples;
+
+    public ClockOffsetEstimate() {
+        this.samples = new ArrayList<long[]>();
+    }
+
+    /* Adds an exchange. All timestamps are wall-clock nanoseconds, t1 and t4 from our clock and t2 and t3 from the remote one. */
+    public void addSample(long t1, long t2, long t3, long t4) {
+        long sampleOffset = ((t2 - t1) + (t3 - t4)) / 2;
+        long sampleDelay = (t4 - t1) - (t3 - t2);
+        samples.add(new long[]{t1, sampleOffset, sampleDelay});
+        estimate();
+    }
+
+    private void estimate() {
+        ArrayList<long[]> byDelay = new ArrayList<long[]>(samples);
+        Collections.sort(byDelay, (a, b) -> Long.compare(a[2], b[2]));
+
+        long[] best = byDelay.get(0);
+        this.referenceTime = best[0];
+        this.offset = best[1];
+        this.errorBound = Math.max(best[2], 0) / 2;
+
+        //least-squares slope of offset over time, relative to the best sample to keep the sums small
+        int fitCount = Math.max(2, byDelay.size() / 2);
+        if (byDelay.size() < fitCount) {
+            this.drift = 0;
+            return;
+        }
+        double sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+        for (int i = 0; i < fitCount; i++) {
+            double x = byDelay.get(i)[0] - referenceTime;
+            double y = byDelay.get(i)[1] - offset;
+            sumX += x;
+            sumY += y;
+            sumXX += x * x;
+            sumXY += x * y;
+        }
+        double denominator = fitCount * sumXX - sumX * sumX;
+        this.drift = denominator == 0 ? 0 : (fitCount * sumXY - sumX * sumY) / denominator;
+    }
+
+    /* Returns the remote clock's offset from ours, in nanoseconds, at the given local wall-clock time */
+    public long getOffset(long localTime) {
+        return offset + (long)(drift * (localTime - referenceTime));
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    /* Returns the maximum error of the offset estimate in nanoseconds */
+    public long getErrorBound() {
+        return errorBound;
+    }
+
+    /* Returns the drift of the remote clock relative to ours in parts per million */
+    public double getDriftPpm() {
+        return drift * 1000000;
+    }
+
+    public int getSampleCount() {
+        return samples.size();
+    }
+}
@@ -0,0 +1,92 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Accepts connections as fast as it can for the connection setup test. The accepting thread only stamps and hands off
+ * each connection; a pool of workers writes the accept timestamp as the first bytes of the connection and closes it, so
+ * the accept queue is drained at the rate the kernel can complete handshakes.
+ */
+public class ConnectionAcceptServer implements Runnable {
+
+    public static final int PORT = Host.PORT + 1;
+    static final int BACKLOG = 1024;
+    static final int WORKER_COUNT = 4;
+
+    ServerSocket serverSocket;
+    ExecutorService workers;
+    Thread acceptThread;
+    AtomicLong acceptedCount;
+
+    public ConnectionAcceptServer() {
+        this.acceptedCount = new AtomicLong();
+    }
+
+    /* Accepts on the given server socket instead of a plain one on PORT, e.g. to run handshakes over TLS */
+    public ConnectionAcceptServer(ServerSocket serverSocket) {
+        this.serverSocket = serverSocket;
+        this.acceptedCount = new AtomicLong();
+    }
+
+    public void start() throws IOException {
+        if (serverSocket == null) {
+            this.serverSocket = new ServerSocket(PORT, BACKLOG);
+        }
+        this.workers = Executors.newFixedThreadPool(WORKER_COUNT);
+        this.acceptThread = new Thread(this);
+        this.acceptThread.start();
+    }
+
+    @Override
+    public void run() {
+        while (!serverSocket.isClosed()) {
+            Socket connection;
+            long acceptTime;
+            try {
+                connection = serverSocket.accept();
+                acceptTime = WallClock.nanoTime();
+            } catch (IOException e) {
+
+                //the server socket was closed by stop()
+                break;
+            }
+            acceptedCount.incrementAndGet();
+            workers.execute(() -> respond(connection, acceptTime));
+        }
+    }
+
+    private static void respond(Socket connection, long acceptTime) {
+        try {
+            connection.setTcpNoDelay(true);
+            OutputStream out = connection.getOutputStream();
+            out.write(ByteConverter.longToByteArray(acceptTime));
+            out.flush();
+            connection.close();
+        } catch (IOException e) {
+            System.out.println("Failed to respond to connection");
+        }
+    }
+
+    /* Stops accepting and returns the number of connections accepted */
+    public long stop() throws IOException {
+        if (acceptThread == null) {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+            return acceptedCount.get();
+        }
+        serverSocket.close();
+        try {
+            acceptThread.join();
+            workers.shutdown();
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return acceptedCount.get();
+    }
+}
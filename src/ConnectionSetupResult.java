@@ -0,0 +1,74 @@
+/* The outcome of a connection setup test: how many connects succeeded, failed or timed out, and the latency of each
+ * stage of every successful connection.
+ */
+public class ConnectionSetupResult {
+
+    int concurrency;
+    int succeededCount;
+    int failedCount;
+    int timedOutCount;
+    long acceptedCount;
+    long elapsedTime;
+    LatencyDistribution connectLatencies;
+    LatencyDistribution firstByteLatencies;
+    LatencyDistribution acceptLatencies;
+
+    public ConnectionSetupResult(int concurrency, int succeededCount, int failedCount, int timedOutCount, long acceptedCount,
+                                 long elapsedTime, LatencyDistribution connectLatencies,
+                                 LatencyDistribution firstByteLatencies, LatencyDistribution acceptLatencies) {
+        this.concurrency = concurrency;
+        this.succeededCount = succeededCount;
+        this.failedCount = failedCount;
+        this.timedOutCount = timedOutCount;
+        this.acceptedCount = acceptedCount;
+        this.elapsedTime = elapsedTime;
+        this.connectLatencies = connectLatencies;
+        this.firstByteLatencies = firstByteLatencies;
+        this.acceptLatencies = acceptLatencies;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getSucceededCount() {
+        return succeededCount;
+    }
+
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    public int getTimedOutCount() {
+        return timedOutCount;
+    }
+
+    /* Returns the number of connections the server accepted, including any whose first byte never reached us */
+    public long getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    /* Returns the number of successful connections per second */
+    public double getConnectionsPerSecond() {
+        return elapsedTime == 0 ? 0 : succeededCount * 1000000000.0 / elapsedTime;
+    }
+
+    /* Returns the time connect() took to return */
+    public LatencyDistribution getConnectLatencies() {
+        return connectLatencies;
+    }
+
+    /* Returns the time from calling connect() until the first byte from the server arrived */
+    public LatencyDistribution getFirstByteLatencies() {
+        return firstByteLatencies;
+    }
+
+    /* Returns the time from calling connect() until the server's accept() returned, corrected for clock offset */
+    public LatencyDistribution getAcceptLatencies() {
+        return acceptLatencies;
+    }
+}
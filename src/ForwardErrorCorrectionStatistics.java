@@ -0,0 +1,74 @@
+import java.nio.ByteBuffer;
+
+/* Counts, on the receiving side of large UDP messages, how often lost packets had to be requested again and how often
+ * forward error correction rebuilt them instead. A message whose losses were all rebuilt from parity completes without
+ * any retransmission round, which is counted as a round avoided.
+ */
+public class ForwardErrorCorrectionStatistics {
+
+    public static final int SERIALIZED_SIZE = (Long.SIZE / Byte.SIZE) * 4;
+
+    long messageCount;
+    long retransmissionRounds;
+    long recoveredPackets;
+    long roundsAvoided;
+
+    /* Records a received message, the number of NACK rounds it took and the number of its packets rebuilt from parity */
+    public void recordMessage(int rounds, int recovered) {
+        messageCount++;
+        retransmissionRounds += rounds;
+        recoveredPackets += recovered;
+        if (rounds == 0 && recovered > 0) {
+            roundsAvoided++;
+        }
+    }
+
+    public void add(ForwardErrorCorrectionStatistics statistics) {
+        messageCount += statistics.messageCount;
+        retransmissionRounds += statistics.retransmissionRounds;
+        recoveredPackets += statistics.recoveredPackets;
+        roundsAvoided += statistics.roundsAvoided;
+    }
+
+    public void reset() {
+        messageCount = 0;
+        retransmissionRounds = 0;
+        recoveredPackets = 0;
+        roundsAvoided = 0;
+    }
+
+    public long getMessageCount() {
+        return messageCount;
+    }
+
+    public long getRetransmissionRounds() {
+        return retransmissionRounds;
+    }
+
+    public long getRecoveredPackets() {
+        return recoveredPackets;
+    }
+
+    public long getRoundsAvoided() {
+        return roundsAvoided;
+    }
+
+    public byte[] toByteArray() {
+        ByteBuffer buffer = ByteBuffer.allocate(SERIALIZED_SIZE);
+        buffer.putLong(messageCount);
+        buffer.putLong(retransmissionRounds);
+        buffer.putLong(recoveredPackets);
+        buffer.putLong(roundsAvoided);
+        return buffer.array();
+    }
+
+    public static ForwardErrorCorrectionStatistics fromByteArray(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        ForwardErrorCorrectionStatistics statistics = new ForwardErrorCorrectionStatistics();
+        statistics.messageCount = buffer.getLong();
+        statistics.retransmissionRounds = buffer.getLong();
+        statistics.recoveredPackets = buffer.getLong();
+        statistics.roundsAvoided = buffer.getLong();
+        return statistics;
+    }
+}
@@ -0,0 +1,179 @@
+import java.nio.ByteBuffer;
+
+/* A streaming parser for request frames. It decodes frames in place from a ByteBuffer without copying them, and a frame
+ * that has only partially arrived is left in the buffer until the rest of it has been read. Bytes that cannot start a
+ * frame are skipped one at a time, so the parser resynchronizes at any byte offset rather than at frame boundaries.
+ *
+ * Two wire formats are understood:
+ *   version 1: sentinel (4) | request code (1) | total byte count (4) | message size (4)
+ *   version 2: magic (2) | version (1) | request code (1) | flags (1) | session id (4) | sequence number (4)
+ *              | payload length (4) | payload
+ * A version 1 frame is reported as having an 8 byte payload holding its two ints, so callers read both versions alike.
+ */
+public class FrameParser {
+
+    public static final int V1_SENTINEL = -1;
+    public static final int V1_FRAME_SIZE = 1 + (Integer.SIZE / Byte.SIZE) * 3;
+    public static final int V1_PAYLOAD_OFFSET = 5;
+    public static final int V1_PAYLOAD_LENGTH = (Integer.SIZE / Byte.SIZE) * 2;
+
+    public static final byte V2_MAGIC_HIGH = 'N';
+    public static final byte V2_MAGIC_LOW = 'A';
+    public static final int V2_VERSION = 2;
+    public static final int V2_HEADER_SIZE = 17;
+    public static final int MAX_PAYLOAD_LENGTH = 64 * 1024;
+
+    public static final int FLAGS_NONE = 0;
+
+    static final int V2_VERSION_OFFSET = 2;
+    static final int V2_REQUEST_CODE_OFFSET = 3;
+    static final int V2_FLAGS_OFFSET = 4;
+    static final int V2_SESSION_ID_OFFSET = 5;
+    static final int V2_SEQUENCE_NUMBER_OFFSET = 9;
+    static final int V2_PAYLOAD_LENGTH_OFFSET = 13;
+
+    static final int NOT_A_FRAME = -1;
+
+    ByteBuffer buffer;
+    int frameStart;
+    int version;
+    int payloadLength;
+    int bytesNeeded;
+
+    /* Looks for the next complete frame between the buffer's position and limit. If one is found the buffer's position is
+     * advanced past it and true is returned; the frame's fields can then be read until the buffer is next modified.
+     * Otherwise the position is left at the start of any partial frame and getBytesNeeded says how much more to read.
+     */
+    public boolean parse(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.version = 0;
+
+        while (buffer.hasRemaining()) {
+            int start = buffer.position();
+            int frameSize = frameSizeAt(buffer, start);
+            if (frameSize == NOT_A_FRAME) {
+                buffer.position(start + 1);
+                continue;
+            }
+
+            int available = buffer.limit() - start;
+            if (available < frameSize) {
+                this.bytesNeeded = frameSize - available;
+                return false;
+            }
+
+            this.frameStart = start;
+            if (buffer.get(start) == V2_MAGIC_HIGH) {
+                this.version = V2_VERSION;
+                this.payloadLength = buffer.getInt(start + V2_PAYLOAD_LENGTH_OFFSET);
+            }
+            else {
+                this.version = 1;
+                this.payloadLength = V1_PAYLOAD_LENGTH;
+            }
+            buffer.position(start + frameSize);
+            this.bytesNeeded = 0;
+            return true;
+        }
+
+        this.bytesNeeded = 1;
+        return false;
+    }
+
+    /* Returns the size of the frame starting at the given index, or NOT_A_FRAME if no frame can start there. If only a
+     * prefix of a frame is available the size returned is the least the frame could be.
+     */
+    private int frameSizeAt(ByteBuffer buffer, int index) {
+        int available = buffer.limit() - index;
+        byte first = buffer.get(index);
+
+        if (first == (byte)V1_SENTINEL) {
+            for (int i = 1; i < Math.min(available, Integer.SIZE / Byte.SIZE); i++) {
+                if (buffer.get(index + i) != (byte)V1_SENTINEL) {
+                    return NOT_A_FRAME;
+                }
+            }
+            return V1_FRAME_SIZE;
+        }
+
+        if (first == V2_MAGIC_HIGH) {
+            if (available > 1 && buffer.get(index + 1) != V2_MAGIC_LOW) {
+                return NOT_A_FRAME;
+            }
+            if (available > V2_VERSION_OFFSET && buffer.get(index + V2_VERSION_OFFSET) != V2_VERSION) {
+                return NOT_A_FRAME;
+            }
+            if (available < V2_HEADER_SIZE) {
+                return V2_HEADER_SIZE;
+            }
+            int length = buffer.getInt(index + V2_PAYLOAD_LENGTH_OFFSET);
+            if (length < 0 || length > MAX_PAYLOAD_LENGTH) {
+                return NOT_A_FRAME;
+            }
+            return V2_HEADER_SIZE + length;
+        }
+
+        return NOT_A_FRAME;
+    }
+
+    /* Writes a version 2 frame header for a payload of the given length into the buffer at its position */
+    public static void writeHeader(ByteBuffer buffer, int requestCode, int flags, int sessionId, int sequenceNumber, int payloadLength) {
+        buffer.put(V2_MAGIC_HIGH);
+        buffer.put(V2_MAGIC_LOW);
+        buffer.put((byte)V2_VERSION);
+        buffer.put((byte)requestCode);
+        buffer.put((byte)flags);
+        buffer.putInt(sessionId);
+        buffer.putInt(sequenceNumber);
+        buffer.putInt(payloadLength);
+    }
+
+    /* Returns the number of bytes that must be added to the buffer before the next frame can be parsed */
+    public int getBytesNeeded() {
+        return bytesNeeded;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public int getRequestCode() {
+        if (version == V2_VERSION) {
+            return buffer.get(frameStart + V2_REQUEST_CODE_OFFSET);
+        }
+        return buffer.get(frameStart + Integer.SIZE / Byte.SIZE);
+    }
+
+    public int getFlags() {
+        return version == V2_VERSION ? buffer.get(frameStart + V2_FLAGS_OFFSET) : FLAGS_NONE;
+    }
+
+    public int getSessionId() {
+        return version == V2_VERSION ? buffer.getInt(frameStart + V2_SESSION_ID_OFFSET) : 0;
+    }
+
+    public int getSequenceNumber() {
+        return version == V2_VERSION ? buffer.getInt(frameStart + V2_SEQUENCE_NUMBER_OFFSET) : 0;
+    }
+
+    public int getPayloadLength() {
+        return payloadLength;
+    }
+
+    /* Returns the int at the given offset into the payload, read directly from the underlying buffer */
+    public int getPayloadInt(int offset) {
+        return buffer.getInt(payloadStart() + offset);
+    }
+
+    /* Returns a view of the payload that shares the underlying buffer's memory */
+    public ByteBuffer getPayload() {
+        ByteBuffer payload = buffer.duplicate();
+        payload.limit(payloadStart() + payloadLength);
+        payload.position(payloadStart());
+        return payload.slice();
+    }
+
+    private int payloadStart() {
+        return frameStart + (version == V2_VERSION ? V2_HEADER_SIZE : V1_PAYLOAD_OFFSET);
+    }
+}
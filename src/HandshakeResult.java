@@ -0,0 +1,19 @@
+/* The handshake latencies measured by a TLS handshake test and how many of the handshakes resumed a session */
+public class HandshakeResult {
+
+    LatencyDistribution latencies;
+    int resumedCount;
+
+    public HandshakeResult(LatencyDistribution latencies, int resumedCount) {
+        this.latencies = latencies;
+        this.resumedCount = resumedCount;
+    }
+
+    public LatencyDistribution getLatencies() {
+        return latencies;
+    }
+
+    public int getResumedCount() {
+        return resumedCount;
+    }
+}
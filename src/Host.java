@@ -1,4 +1,5 @@
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Random;
 
 public abstract class Host {
@@ -20,6 +21,13 @@ public abstract class Host {
 
     public abstract void sendMsg(byte[] msg) throws IOException;
 
+    /* Sends length bytes of data starting at offset as one message. Hosts that can send from within an array override
+     * this to avoid the copy.
+     */
+    public void sendMsg(byte[] data, int offset, int length) throws IOException {
+        sendMsg(Arrays.copyOfRange(data, offset, offset + length));
+    }
+
     public abstract int readByte() throws IOException;
 
     public void readACK() throws IOException {
@@ -42,6 +50,18 @@ public abstract class Host {
 
     public abstract void readMsg(byte[] bytes) throws IOException;
 
+    /* Reads a message of length bytes into bytes starting at offset. Hosts that can read into an array at an offset
+     * override this to avoid the copy.
+     */
+    public void readMsg(byte[] bytes, int offset, int length) throws IOException {
+        byte[] msg = new byte[length];
+        readMsg(msg);
+        System.arraycopy(msg, 0, bytes, offset, length);
+    }
+
+    /* Sets how long, in milliseconds, a read may block before failing with a SocketTimeoutException. Zero waits forever. */
+    public abstract void setReadTimeout(int timeout) throws IOException;
+
     public abstract void disconnectFromRemoteHost() throws IOException;
 
     public Boolean isConnectedToRemoteHost() {
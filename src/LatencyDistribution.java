@@ -0,0 +1,48 @@
+import java.util.Arrays;
+
+/* Summarizes a set of latency samples, in nanoseconds, by their percentiles */
+public class LatencyDistribution {
+
+    long[] sortedSamples;
+
+    public LatencyDistribution(long[] samples, int sampleCount) {
+        this.sortedSamples = Arrays.copyOf(samples, sampleCount);
+        Arrays.sort(sortedSamples);
+    }
+
+    /* Returns the sample at the given percentile (0 to 100) using the nearest-rank method, or 0 if there are no samples */
+    public long getPercentile(double percentile) {
+        if (sortedSamples.length == 0) {
+            return 0;
+        }
+        int rank = (int)Math.ceil((percentile / 100) * sortedSamples.length);
+        return sortedSamples[Math.min(Math.max(rank, 1), sortedSamples.length) - 1];
+    }
+
+    public long getMin() {
+        return sortedSamples.length == 0 ? 0 : sortedSamples[0];
+    }
+
+    public long getMax() {
+        return sortedSamples.length == 0 ? 0 : sortedSamples[sortedSamples.length - 1];
+    }
+
+    public long getMedian() {
+        return getPercentile(50);
+    }
+
+    public double getMean() {
+        if (sortedSamples.length == 0) {
+            return 0;
+        }
+        double sum = 0;
+        for (long sample : sortedSamples) {
+            sum += sample;
+        }
+        return sum / sortedSamples.length;
+    }
+
+    public int getCount() {
+        return sortedSamples.length;
+    }
+}
@@ -0,0 +1,145 @@
+import java.io.IOException;
+import java.util.Random;
+
+/* An in-process host that exchanges bytes with another LoopbackHost through a pair of lock-free ring buffers instead of
+ * a socket. Running the test suites over it measures the cost of the tool itself, with no kernel or network involved.
+ */
+public class LoopbackHost extends AnalyticHost {
+
+    public static final int RING_BUFFER_SIZE = 256 * 1024;
+
+    SpscByteRingBuffer inbound;
+    SpscByteRingBuffer outbound;
+    int readTimeout;
+    byte[] singleByte;
+
+    public LoopbackHost() {
+        this.inbound = null;
+        this.outbound = null;
+        this.readTimeout = 0;
+        this.singleByte = new byte[1];
+        this.rand = new Random();
+    }
+
+    /* Connects this host to the given one with a fresh pair of ring buffers, one for each direction */
+    public void connectToRemoteHost(LoopbackHost remoteHost) {
+        SpscByteRingBuffer toRemote = new SpscByteRingBuffer(RING_BUFFER_SIZE);
+        SpscByteRingBuffer fromRemote = new SpscByteRingBuffer(RING_BUFFER_SIZE);
+
+        this.outbound = toRemote;
+        this.inbound = fromRemote;
+        this.resetProtocolVersion();
+
+        remoteHost.outbound = fromRemote;
+        remoteHost.inbound = toRemote;
+        remoteHost.resetProtocolVersion();
+    }
+
+    @Override
+    public void disconnectFromRemoteHost() throws IOException {
+        byte[] header = buildHeader(CLOSE_CONNECTION, 0, 0);
+        try {
+            sendMsg(header);
+        } catch (IOException e) {
+            System.out.println("Header Failed to Send");
+        }
+
+        this.outbound.close();
+        this.outbound = null;
+        this.inbound = null;
+    }
+
+    @Override
+    public void setReadTimeout(int timeout) {
+        this.readTimeout = timeout;
+    }
+
+    @Override
+    public boolean outputConnectionIsActive() {
+        return outbound != null && !outbound.isClosed();
+    }
+
+    @Override
+    public boolean inputConnectionIsActive() {
+        return inbound != null;
+    }
+
+    @Override
+    public void sendByte(int data) throws IOException {
+        if (!outputConnectionIsActive()) {
+            System.out.println("Output Connection is inactive");
+            throw new IOException();
+        }
+        singleByte[0] = (byte)data;
+        outbound.write(singleByte, 0, 1);
+    }
+
+    @Override
+    public void sendMsg(byte[] data) throws IOException {
+        sendMsg(data, 0, data.length);
+    }
+
+    @Override
+    public void sendMsg(byte[] data, int offset, int length) throws IOException {
+        if (!outputConnectionIsActive()) {
+            System.out.println("Output Connection is inactive");
+            throw new IOException();
+        }
+        outbound.write(data, offset, length);
+    }
+
+    @Override
+    public int readByte() throws IOException {
+        if (!inputConnectionIsActive()) {
+            System.out.println("Input Connection is inactive");
+            throw new IOException();
+        }
+        byte[] data = new byte[1];
+        inbound.read(data, 0, 1, readTimeout);
+        return data[0];
+    }
+
+    @Override
+    public void readMsg(byte[] bytes) throws IOException {
+        readMsg(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void readMsg(byte[] bytes, int offset, int length) throws IOException {
+        if (!inputConnectionIsActive()) {
+            System.out.println("Input Connection is inactive");
+            throw new IOException();
+        }
+        inbound.read(bytes, offset, length, readTimeout);
+    }
+
+    /* Serves requests on the calling thread until the remote host closes the connection */
+    @Override
+    public void startServer() throws IOException {
+        try {
+            while (reply());
+        } catch (Exception e) {
+            System.out.println("A Server Exception occurred");
+            throw new IOException();
+        }
+    }
+
+    @Override
+    public void startServer(int maxNumberOfRequests) throws IOException {
+        try {
+            for (int i = 0; i < maxNumberOfRequests; i++) {
+                if (!reply()) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            System.out.println("A Server Exception occurred");
+            throw new IOException();
+        }
+    }
+
+    @Override
+    public String getProtocolString() {
+        return "Loopback";
+    }
+}
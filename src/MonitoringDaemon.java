@@ -0,0 +1,216 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/* Keeps one session open with the remote host and probes it on a schedule, instead of reconnecting and rerunning the
+ * full suite. Every echo and throughput sample is added to rolling 1 minute, 10 minute and 1 hour windows whose memory
+ * is fixed, so the daemon can run indefinitely. The current aggregates are written to the results file every minute
+ * and on shutdown, and are sent to any local process that connects to QUERY_PORT, e.g. with "nc localhost 2696".
+ *
+ * All probes run on a single scheduler thread, as a session can only carry one test at a time. A failed probe is
+ * counted in the windows and the session is reopened before the next one.
+ */
+public class MonitoringDaemon {
+
+    public static final int QUERY_PORT = Host.PORT + 5;
+    public static final int DEFAULT_ECHO_INTERVAL = 1;
+    public static final int DEFAULT_THROUGHPUT_INTERVAL = 60;
+    public static final int ECHO_MSG_SIZE = 1;
+    public static final int THROUGHPUT_MSG_SIZE = 64 * 1024;
+    static final int PROBE_TIMEOUT = 5000;
+    static final int DUMP_INTERVAL = 60;
+
+    static final String[] WINDOW_NAMES = {"1 min", "10 min", "1 h"};
+    static final String[] METRIC_NAMES = {"Echo Latency (ns)", "Client to Server Throughput (bit/s)", "Server to Client Throughput (bit/s)"};
+    static final int ECHO_LATENCY = 0;
+    static final int CLIENT_TO_SERVER_THROUGHPUT = 1;
+    static final int SERVER_TO_CLIENT_THROUGHPUT = 2;
+
+    String remoteHost;
+    String transport;
+    int echoInterval;
+    int throughputInterval;
+    String resultsFileName;
+
+    AnalyticHost client;
+    RollingWindow[][] windows;
+    long startTime;
+    ScheduledExecutorService scheduler;
+    ServerSocket queryServer;
+
+    public MonitoringDaemon(String remoteHost, String transport, int echoInterval, int throughputInterval, String resultsFileName) {
+        this.remoteHost = remoteHost;
+        this.transport = transport;
+        this.echoInterval = echoInterval;
+        this.throughputInterval = throughputInterval;
+        this.resultsFileName = resultsFileName;
+
+        //60 buckets per window keeps each window's resolution at a sixtieth of its length
+        this.windows = new RollingWindow[METRIC_NAMES.length][];
+        for (int metric = 0; metric < METRIC_NAMES.length; metric++) {
+            windows[metric] = new RollingWindow[] {
+                    new RollingWindow(1000, 60),
+                    new RollingWindow(10 * 1000, 60),
+                    new RollingWindow(60 * 1000, 60)
+            };
+        }
+    }
+
+    /* Starts probing and serving queries, then blocks until the process is stopped */
+    public void run() throws IOException {
+        try {
+            this.queryServer = new ServerSocket(QUERY_PORT, 0, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            System.out.println("Unable to open the query port " + QUERY_PORT);
+            throw new IOException();
+        }
+
+        this.startTime = System.currentTimeMillis();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleAtFixedRate(this::probeEcho, 0, echoInterval, TimeUnit.SECONDS);
+        scheduler.scheduleAtFixedRate(this::probeThroughput, 0, throughputInterval, TimeUnit.SECONDS);
+        scheduler.scheduleAtFixedRate(this::dump, DUMP_INTERVAL, DUMP_INTERVAL, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown));
+
+        System.out.println("Monitoring " + remoteHost + " over " + transport + ", query port " + QUERY_PORT);
+        while (!queryServer.isClosed()) {
+            try (Socket query = queryServer.accept()) {
+                PrintWriter queryWriter = new PrintWriter(new OutputStreamWriter(query.getOutputStream()));
+                printSummary(queryWriter);
+                queryWriter.flush();
+            } catch (IOException e) {
+                if (!queryServer.isClosed()) {
+                    System.out.println("Failed to answer a query");
+                }
+            }
+        }
+    }
+
+    private void probeEcho() {
+        long time = System.currentTimeMillis();
+        try {
+            connectIfNeeded();
+            long latency = client.echoTest(ECHO_MSG_SIZE);
+            for (RollingWindow window : windows[ECHO_LATENCY]) {
+                window.record(time, latency);
+            }
+        } catch (Exception e) {
+            for (RollingWindow window : windows[ECHO_LATENCY]) {
+                window.recordFailure(time);
+            }
+            closeSession();
+        }
+    }
+
+    private void probeThroughput() {
+        long time = System.currentTimeMillis();
+        try {
+            connectIfNeeded();
+            ArrayList<Long> results = client.throughputTest(THROUGHPUT_MSG_SIZE);
+            for (RollingWindow window : windows[CLIENT_TO_SERVER_THROUGHPUT]) {
+                window.record(time, bitsPerSecond(THROUGHPUT_MSG_SIZE, results.get(0)));
+            }
+            for (RollingWindow window : windows[SERVER_TO_CLIENT_THROUGHPUT]) {
+                window.record(time, bitsPerSecond(THROUGHPUT_MSG_SIZE, results.get(1)));
+            }
+        } catch (Exception e) {
+            for (int metric = CLIENT_TO_SERVER_THROUGHPUT; metric <= SERVER_TO_CLIENT_THROUGHPUT; metric++) {
+                for (RollingWindow window : windows[metric]) {
+                    window.recordFailure(time);
+                }
+            }
+            closeSession();
+        }
+    }
+
+    private static long bitsPerSecond(int byteCount, long duration) {
+        return duration <= 0 ? 0 : (long)(byteCount * 8.0 * 1e9 / duration);
+    }
+
+    private void connectIfNeeded() throws Exception {
+        if (client != null) {
+            client.setReadTimeout(PROBE_TIMEOUT);
+            return;
+        }
+
+        if (transport.equals("udp")) {
+            AnalyticUDPHost udpClient = new AnalyticUDPHost();
+            udpClient.connectToServer(remoteHost);
+            this.client = udpClient;
+        }
+        else if (transport.equals("tls")) {
+            AnalyticTLSHost tlsClient = new AnalyticTLSHost(AnalyticTLSHost.getSupportedCipherSuites().get(0));
+            tlsClient.connectToRemoteHost(remoteHost);
+            this.client = tlsClient;
+        }
+        else if (transport.equals("unix")) {
+            AnalyticUnixDomainHost unixDomainClient = new AnalyticUnixDomainHost();
+            unixDomainClient.connectToServer();
+            this.client = unixDomainClient;
+        }
+        else {
+            AnalyticTCPHost tcpClient = new AnalyticTCPHost();
+            tcpClient.connectToRemoteHost(remoteHost);
+            this.client = tcpClient;
+        }
+        client.negotiateProtocolVersion();
+        client.setReadTimeout(PROBE_TIMEOUT);
+    }
+
+    private void closeSession() {
+        if (client == null) {
+            return;
+        }
+        try {
+            client.disconnectFromRemoteHost();
+        } catch (Exception ignored) {
+
+            //the session is being abandoned either way
+        }
+        this.client = null;
+    }
+
+    private void dump() {
+        try (PrintWriter resultsWriter = new PrintWriter(resultsFileName)) {
+            printSummary(resultsWriter);
+        } catch (IOException e) {
+            System.out.println("Unable to write " + resultsFileName);
+        }
+    }
+
+    private void shutdown() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(PROBE_TIMEOUT, TimeUnit.MILLISECONDS);
+            queryServer.close();
+        } catch (Exception ignored) {
+
+            //the process is exiting
+        }
+        closeSession();
+        dump();
+    }
+
+    public void printSummary(PrintWriter resultsWriter) {
+        long time = System.currentTimeMillis();
+        resultsWriter.println("NETWORK ANALYSIS MONITORING");
+        resultsWriter.println("REMOTE HOST: " + remoteHost);
+        resultsWriter.println("TRANSPORT: " + transport);
+        resultsWriter.println("UPTIME (s): " + (time - startTime) / 1000);
+        resultsWriter.println();
+        resultsWriter.println("Metric,Window,Samples,Failures,Min,Mean,Median,P99,Max");
+        for (int metric = 0; metric < METRIC_NAMES.length; metric++) {
+            for (int window = 0; window < WINDOW_NAMES.length; window++) {
+                RollingWindow.Summary summary = windows[metric][window].summarize(time);
+                resultsWriter.println(METRIC_NAMES[metric] + "," + WINDOW_NAMES[window] + "," + summary.getCount() + ","
+                        + summary.getFailureCount() + "," + summary.getMin() + "," + (long)summary.getMean() + ","
+                        + summary.getMedian() + "," + summary.getP99() + "," + summary.getMax());
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+
+/* Measures UDP multicast fan-out from one sender to several receivers joined to the same group. Every receiver runs in
+ * this process, on the loopback or another local interface, so the probes' send timestamps and the receivers' arrival
+ * times come from the same clock and each receiver can report true one-way latency along with its loss and jitter.
+ */
+public class MulticastFanOutTest {
+
+    public static final String GROUP_ADDRESS = "239.255.26.91";
+    public static final int PORT = Host.PORT + 4;
+    static final int RECEIVER_READY_TIMEOUT = 5000;
+
+    NetworkInterface networkInterface;
+    InetAddress group;
+
+    /* Uses the named interface, or picks one that supports multicast if the name is null */
+    public MulticastFanOutTest(String interfaceName) throws IOException {
+        this.group = InetAddress.getByName(GROUP_ADDRESS);
+        this.networkInterface = interfaceName != null ? NetworkInterface.getByName(interfaceName) : findMulticastInterface();
+        if (networkInterface == null) {
+            System.out.println("No multicast capable network interface found");
+            throw new IOException();
+        }
+    }
+
+    /* Prefers an interface other than the loopback, since Linux does not flag the loopback as multicast capable */
+    private static NetworkInterface findMulticastInterface() throws SocketException {
+        NetworkInterface loopback = null;
+        for (NetworkInterface candidate : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+            if (!candidate.isUp() || !candidate.inetAddresses().anyMatch(address -> address.getAddress().length == 4)) {
+                continue;
+            }
+            if (candidate.isLoopback()) {
+                loopback = candidate;
+            }
+            else if (candidate.supportsMulticast()) {
+                return candidate;
+            }
+        }
+        return loopback;
+    }
+
+    public String getInterfaceName() {
+        return networkInterface.getName();
+    }
+
+    /* Sends packetCount probes of packetSize bytes to the group at the given rate while receiverCount receivers listen.
+     * Returns each receiver's statistics once every receiver has seen all probes or been idle for PROBE_STREAM_TIMEOUT.
+     */
+    public ArrayList<ProbeStreamStatistics> run(int receiverCount, int packetCount, int packetSize, int packetsPerSecond) throws IOException {
+        if (packetSize < AnalyticUDPHost.PROBE_HEADER_SIZE || packetSize > AnalyticUDPHost.MAX_DATAGRAM_SIZE) {
+            System.out.println("Probe size must be between " + AnalyticUDPHost.PROBE_HEADER_SIZE + " and " + AnalyticUDPHost.MAX_DATAGRAM_SIZE + " bytes");
+            throw new IOException();
+        }
+
+        ArrayList<ProbeStreamStatistics> results = new ArrayList<ProbeStreamStatistics>();
+        ArrayList<Thread> receivers = new ArrayList<Thread>();
+        ArrayList<MulticastSocket> receiverSockets = new ArrayList<MulticastSocket>();
+        CountDownLatch receiversReady = new CountDownLatch(receiverCount);
+
+        try {
+            for (int i = 0; i < receiverCount; i++) {
+                MulticastSocket receiverSocket = new MulticastSocket(PORT);
+                receiverSocket.joinGroup(new InetSocketAddress(group, PORT), networkInterface);
+                receiverSocket.setSoTimeout(AnalyticUDPHost.PROBE_STREAM_TIMEOUT);
+                receiverSockets.add(receiverSocket);
+
+                ProbeStreamStatistics statistics = new ProbeStreamStatistics(packetCount);
+                results.add(statistics);
+                Thread receiver = new Thread(() -> receive(receiverSocket, statistics, packetSize, receiversReady));
+                receivers.add(receiver);
+                receiver.start();
+            }
+
+            receiversReady.await();
+            send(packetCount, packetSize, packetsPerSecond);
+            for (Thread receiver : receivers) {
+                receiver.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException();
+        } finally {
+            for (MulticastSocket receiverSocket : receiverSockets) {
+                receiverSocket.close();
+            }
+        }
+        return results;
+    }
+
+    private void send(int packetCount, int packetSize, int packetsPerSecond) throws IOException {
+        try (MulticastSocket senderSocket = new MulticastSocket()) {
+            senderSocket.setNetworkInterface(networkInterface);
+            senderSocket.setTimeToLive(1);
+            senderSocket.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+
+            byte[] probe = new byte[packetSize];
+            DatagramPacket packet = new DatagramPacket(probe, probe.length, group, PORT);
+            ByteBuffer probeBuffer = ByteBuffer.wrap(probe);
+            TokenBucketPacer pacer = TokenBucketPacer.packetsPerSecond(packetsPerSecond, AnalyticUDPHost.PACING_BURST_PACKETS);
+            for (int sequenceNumber = 0; sequenceNumber < packetCount; sequenceNumber++) {
+                pacer.acquire(packetSize);
+                probeBuffer.putInt(0, sequenceNumber);
+                probeBuffer.putLong(AnalyticHost.INTEGER_BYTE_SIZE, System.nanoTime());
+                senderSocket.send(packet);
+            }
+        }
+    }
+
+    private static void receive(MulticastSocket receiverSocket, ProbeStreamStatistics statistics, int packetSize, CountDownLatch ready) {
+        byte[] probe = new byte[packetSize];
+        DatagramPacket packet = new DatagramPacket(probe, probe.length);
+        ByteBuffer probeBuffer = ByteBuffer.wrap(probe);
+        ready.countDown();
+        try {
+            while (statistics.getReceivedCount() < statistics.getExpectedCount()) {
+                packet.setLength(probe.length);
+                receiverSocket.receive(packet);
+                long arrivalTime = System.nanoTime();
+                if (packet.getLength() < AnalyticUDPHost.PROBE_HEADER_SIZE) {
+                    continue;
+                }
+                statistics.recordArrival(probeBuffer.getInt(0), probeBuffer.getLong(AnalyticHost.INTEGER_BYTE_SIZE), arrivalTime, packet.getLength());
+            }
+        } catch (SocketTimeoutException ignored) {
+
+            //the remaining probes were lost
+        } catch (IOException e) {
+            System.out.println("Multicast receiver failed");
+        }
+    }
+}
@@ -3,6 +3,7 @@ import java.net.InetAddress;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 
 /* A simple class used to measaure latency and throughput metrics between hosts */
@@ -10,20 +11,140 @@ public class NetworkAnalysisClient {
 
     public static final int kilobyte = (int)(Math.pow(2, 10));
     public static final int megabyte = (int)(Math.pow(2, 20));
+    public static final int DEFAULT_LOSS_CURVE_MAX_RATE = 1000;
+    public static final double DEFAULT_FEC_OVERHEAD = 0.125;
 
     public static void main(String[] args) throws IOException {
         String host;
         String resultsFileName;
         int udpTimeout;
+        boolean calibrate = false;
+        boolean subtractOverhead = false;
+        boolean multicast = false;
+        String multicastInterface = null;
+        String traceFileName = null;
+        boolean daemon = false;
+        boolean capacitySearch = false;
+        int lossCurveMaxRate = 0;
+        double fecOverhead = 0;
+        String payloadContent = PayloadArena.RANDOM_CONTENT;
+        int echoInterval = MonitoringDaemon.DEFAULT_ECHO_INTERVAL;
+        int throughputInterval = MonitoringDaemon.DEFAULT_THROUGHPUT_INTERVAL;
+        ArrayList<String> transports = new ArrayList<String>(Arrays.asList(NetworkAnalysisServer.DEFAULT_TRANSPORTS));
+
+        //compares two results files instead of running tests
+        if (args.length > 0 && args[0].equals("--compare")) {
+            ResultsComparison.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
 
         if (args.length < 2 ){
             System.out.println("Invalid command-line arguments");
+            printUsage();
             return;
         }
 
         host = args[0];
 
+        for (int i = 2; i < args.length; i++) {
+            try {
+                if (args[i].equals("--calibrate")) {
+                    calibrate = true;
+                }
+                else if (args[i].equals("--subtract-overhead")) {
+                    calibrate = true;
+                    subtractOverhead = true;
+                }
+                else if (args[i].startsWith("--transports=")) {
+                    transports = new ArrayList<String>(Arrays.asList(args[i].substring("--transports=".length()).split(",")));
+                    for (String transport : transports) {
+                        if (!Arrays.asList(NetworkAnalysisServer.TRANSPORTS).contains(transport)) {
+                            System.out.println("Unknown transport: " + transport);
+                            return;
+                        }
+                    }
+                }
+                else if (args[i].equals("--multicast")) {
+                    multicast = true;
+                }
+                else if (args[i].startsWith("--multicast=")) {
+                    multicast = true;
+                    multicastInterface = args[i].substring("--multicast=".length());
+                }
+                else if (args[i].startsWith("--trace=")) {
+                    traceFileName = args[i].substring("--trace=".length());
+                }
+                else if (args[i].equals("--loss-curve")) {
+                    lossCurveMaxRate = DEFAULT_LOSS_CURVE_MAX_RATE;
+                }
+                else if (args[i].startsWith("--loss-curve=")) {
+                    lossCurveMaxRate = Integer.parseInt(args[i].substring("--loss-curve=".length()));
+                    if (lossCurveMaxRate <= 0) {
+                        System.out.println("The loss curve's maximum rate must be at least 1 Mbit/s");
+                        return;
+                    }
+                }
+                else if (args[i].equals("--fec")) {
+                    fecOverhead = DEFAULT_FEC_OVERHEAD;
+                }
+                else if (args[i].startsWith("--fec=")) {
+                    fecOverhead = Double.parseDouble(args[i].substring("--fec=".length()));
+                    if (fecOverhead <= 0 || fecOverhead > 1) {
+                        System.out.println("The FEC overhead ratio must be greater than 0 and at most 1");
+                        return;
+                    }
+                }
+                else if (args[i].startsWith("--payload=")) {
+                    payloadContent = args[i].substring("--payload=".length());
+                    if (!Arrays.asList(PayloadArena.CONTENTS).contains(payloadContent)) {
+                        System.out.println("Unknown payload content: " + payloadContent);
+                        return;
+                    }
+                }
+                else if (args[i].equals("--capacity-search")) {
+                    capacitySearch = true;
+                }
+                else if (args[i].equals("--daemon")) {
+                    daemon = true;
+                }
+                else if (args[i].startsWith("--echo-interval=")) {
+                    echoInterval = Integer.parseInt(args[i].substring("--echo-interval=".length()));
+                    if (echoInterval <= 0) {
+                        System.out.println("The echo interval must be at least 1 second");
+                        printUsage();
+                        return;
+                    }
+                }
+                else if (args[i].startsWith("--throughput-interval=")) {
+                    throughputInterval = Integer.parseInt(args[i].substring("--throughput-interval=".length()));
+                    if (throughputInterval <= 0) {
+                        System.out.println("The throughput interval must be at least 1 second");
+                        printUsage();
+                        return;
+                    }
+                }
+                else {
+                    System.out.println("Unknown option: " + args[i]);
+                    return;
+                }
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid number in option: " + args[i]);
+                printUsage();
+                return;
+            }
+        }
+
         resultsFileName = args[1];
+
+        //fill the payload arena before any host exists, so that every test sends from it
+        PayloadArena.setDefault(new PayloadArena(PayloadArena.DEFAULT_CAPACITY, payloadContent));
+
+        //the daemon monitors the first selected transport only, as the server serves one transport at a time
+        if (daemon) {
+            new MonitoringDaemon(host, transports.get(0), echoInterval, throughputInterval, resultsFileName).run();
+            return;
+        }
+
         PrintWriter resultsWriter = null;
         try {
             resultsWriter = new PrintWriter(resultsFileName);
@@ -34,6 +155,19 @@ public class NetworkAnalysisClient {
 
         AnalyticTCPHost tcpClient = new AnalyticTCPHost();
         AnalyticUDPHost udpClient = new AnalyticUDPHost();
+        AnalyticUnixDomainHost unixDomainClient = new AnalyticUnixDomainHost();
+
+        PacketTracer tracer = null;
+        if (traceFileName != null) {
+            try {
+                tracer = new PacketTracer(traceFileName);
+            } catch (IOException e) {
+                return;
+            }
+            tcpClient.setPacketTracer(tracer);
+            udpClient.setPacketTracer(tracer);
+            unixDomainClient.setPacketTracer(tracer);
+        }
 
         long startTime = System.currentTimeMillis();
         DateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
@@ -44,60 +178,175 @@ public class NetworkAnalysisClient {
         resultsWriter.println("LOCAL HOST: " + InetAddress.getLocalHost().getHostName());
         resultsWriter.println("REMOTE HOST: " + host);
         resultsWriter.println("PORT: " + Host.PORT);
+        resultsWriter.println("MAX PROTOCOL VERSION: " + AnalyticHost.MAX_PROTOCOL_VERSION);
+        resultsWriter.println("PAYLOAD: " + payloadContent);
         resultsWriter.println();
 
-        try {
-            udpClient.connectToServer(host);
-            resultsWriter.println("Running UDP Tests With Timeout Value: " + udpClient.NEXT_PACKET_TIMEOUT);
-            runRoundTripLatencyTestSuite(udpClient, 100, resultsWriter);
-            runThroughputTestSuite(udpClient, 50, resultsWriter);
-        } catch(Exception e) {
-            resultsWriter.println("An Error Occurred: UDP Tests Failed to Complete");
-            System.out.println("An Error Occurred: UDP Tests Failed to Complete");
+        ToolOverheadCalibration calibration = null;
+        if (calibrate) {
+            try {
+                calibration = runToolOverheadCalibration(100, resultsWriter);
+            } catch (IOException e) {
+                resultsWriter.println("An Error Occurred: Tool Overhead Calibration Failed to Complete");
+                System.out.println("An Error Occurred: Tool Overhead Calibration Failed to Complete");
+            }
         }
-        udpClient.disconnectFromRemoteHost();
+        ToolOverheadCalibration subtractedOverhead = subtractOverhead ? calibration : null;
 
-        try {
-            tcpClient.connectToRemoteHost(host);
-            runRoundTripLatencyTestSuite(tcpClient, 100, resultsWriter);
-            runThroughputTestSuite(tcpClient, 50, resultsWriter);
-            runPacketTransferTestSuite(tcpClient, 50, resultsWriter);
-        } catch(Exception e) {
-            resultsWriter.println("An Error Occurred: TCP Tests Failed to Complete");
-            System.out.println("An Error Occurred: TCP Tests Failed to Complete");
+        if (transports.contains("udp")) {
+            try {
+                udpClient.connectToServer(host);
+                udpClient.negotiateProtocolVersion();
+                resultsWriter.println("Running UDP Tests With Timeout Value: " + udpClient.NEXT_PACKET_TIMEOUT);
+                runRoundTripLatencyTestSuite(udpClient, 100, subtractedOverhead, resultsWriter);
+                runOneWayDelayTestSuite(udpClient, 100, resultsWriter);
+                runPipelinedEchoTestSuite(udpClient, 2000, resultsWriter);
+                runThroughputTestSuite(udpClient, 50, subtractedOverhead, resultsWriter);
+                runProbeStreamTestSuite(udpClient, 3, 500, resultsWriter);
+                if (lossCurveMaxRate > 0) {
+                    runLossVersusRateTestSuite(udpClient, lossCurveMaxRate, resultsWriter);
+                }
+                if (fecOverhead > 0) {
+                    runForwardErrorCorrectionTestSuite(udpClient, 10, (int)Math.max(1, Math.round(1 / fecOverhead)), resultsWriter);
+                }
+                if (capacitySearch) {
+                    runCapacitySearchSuite(udpClient, AnalyticUDPHost.MAX_MSG_SIZE, resultsWriter);
+                }
+            } catch(Exception e) {
+                resultsWriter.println("An Error Occurred: UDP Tests Failed to Complete");
+                System.out.println("An Error Occurred: UDP Tests Failed to Complete");
+            }
+            udpClient.disconnectFromRemoteHost();
+        }
+
+        if (transports.contains("tcp")) {
+            try {
+                tcpClient.connectToRemoteHost(host);
+                tcpClient.negotiateProtocolVersion();
+                runRoundTripLatencyTestSuite(tcpClient, 100, subtractedOverhead, resultsWriter);
+                runOneWayDelayTestSuite(tcpClient, 100, resultsWriter);
+                runPipelinedEchoTestSuite(tcpClient, 2000, resultsWriter);
+                runConnectionSetupTestSuite(tcpClient, 500, resultsWriter);
+                runThroughputTestSuite(tcpClient, 50, subtractedOverhead, resultsWriter);
+                runFullDuplexThroughputTestSuite(tcpClient, 20, resultsWriter);
+                runPacketTransferTestSuite(tcpClient, 50, resultsWriter);
+                if (capacitySearch) {
+                    runCapacitySearchSuite(tcpClient, 64 * kilobyte, resultsWriter);
+                }
+            } catch(Exception e) {
+                resultsWriter.println("An Error Occurred: TCP Tests Failed to Complete");
+                System.out.println("An Error Occurred: TCP Tests Failed to Complete");
+            }
+            tcpClient.disconnectFromRemoteHost();
+        }
+
+        if (transports.contains("tls")) {
+            try {
+                for (String cipherSuite : AnalyticTLSHost.getSupportedCipherSuites()) {
+                    AnalyticTLSHost tlsClient = new AnalyticTLSHost(cipherSuite);
+                    tlsClient.setPacketTracer(tracer);
+                    tlsClient.connectToRemoteHost(host);
+                    tlsClient.negotiateProtocolVersion();
+                    runHandshakeTestSuite(tlsClient, 50, resultsWriter);
+                    runRoundTripLatencyTestSuite(tlsClient, 100, subtractedOverhead, resultsWriter);
+                    runThroughputTestSuite(tlsClient, 20, subtractedOverhead, resultsWriter);
+                    tlsClient.disconnectFromRemoteHost();
+                }
+            } catch(Exception e) {
+                resultsWriter.println("An Error Occurred: TLS Tests Failed to Complete");
+                System.out.println("An Error Occurred: TLS Tests Failed to Complete");
+            }
+        }
+
+        if (transports.contains("unix")) {
+            try {
+                unixDomainClient.connectToServer();
+                unixDomainClient.negotiateProtocolVersion();
+                runRoundTripLatencyTestSuite(unixDomainClient, 100, subtractedOverhead, resultsWriter);
+                runThroughputTestSuite(unixDomainClient, 50, subtractedOverhead, resultsWriter);
+                runFullDuplexThroughputTestSuite(unixDomainClient, 20, resultsWriter);
+                runPacketTransferTestSuite(unixDomainClient, 50, resultsWriter);
+                if (capacitySearch) {
+                    runCapacitySearchSuite(unixDomainClient, 64 * kilobyte, resultsWriter);
+                }
+                unixDomainClient.disconnectFromRemoteHost();
+            } catch(Exception e) {
+                resultsWriter.println("An Error Occurred: Unix Domain Socket Tests Failed to Complete");
+                System.out.println("An Error Occurred: Unix Domain Socket Tests Failed to Complete");
+            }
+        }
+
+        if (multicast) {
+            try {
+                runMulticastFanOutTestSuite(new MulticastFanOutTest(multicastInterface), resultsWriter);
+            } catch(Exception e) {
+                resultsWriter.println("An Error Occurred: Multicast Tests Failed to Complete");
+                System.out.println("An Error Occurred: Multicast Tests Failed to Complete");
+            }
         }
-        tcpClient.disconnectFromRemoteHost();
 
         resultsWriter.println();
         date = new Date();
         resultsWriter.println("END TIMESTAMP: " + dateFormat.format(date));
         resultsWriter.close();
 
+        if (tracer != null) {
+            tracer.close();
+        }
+
         long endTime = System.currentTimeMillis();
         System.out.println("Test Finished in " + (endTime - startTime) + " ms");
     }
 
-    /* Measures round-trip latency time with the remote host using messages of 1 byte, 32 bytes of 1kb. */
-    private static void runRoundTripLatencyTestSuite(AnalyticHost client, int numOfCases, PrintWriter resultsWriter) throws IOException {
-        int class1MsgSize = 1;
-        int class2MsgSize= 32;
-        int class3MsgSize = kilobyte;
+    private static void printUsage() {
+        System.out.println("Usage: NetworkAnalysisClient <host> <results file> [--calibrate] [--subtract-overhead]"
+                + " [--transports=udp,tcp,tls,unix] [--multicast[=<interface>]] [--trace=<trace file>]"
+                + " [--daemon [--echo-interval=<s>] [--throughput-interval=<s>]] [--capacity-search]"
+                + " [--loss-curve[=<max Mbit/s>]] [--fec[=<overhead ratio>]] [--payload=random|zero|compressible]");
+        System.out.println("       NetworkAnalysisClient --compare <baseline results file> <current results file>"
+                + " [--alpha=<p>] [--threshold=<percent>]");
+    }
+
+    /* Measures round-trip latency time with the remote host using messages of 1 byte, 32 bytes of 1kb.
+     * If a calibration is given, the tool's own overhead for each message size is subtracted from the results.
+     */
+    private static void runRoundTripLatencyTestSuite(AnalyticHost client, int numOfCases, ToolOverheadCalibration calibration, PrintWriter resultsWriter) throws IOException {
+        ArrayList<Integer> testClasses = getRoundTripLatencyTestClasses();
 
         System.out.println("Running " + client.getProtocolString() + " Round Trip Latency Test Suite...");
 
-        resultsWriter.println(client.getProtocolString() + " Round Trip Latency Test");
-        resultsWriter.print("Test Case,");
-        resultsWriter.print(class1MsgSize + ",");
-        resultsWriter.print(class2MsgSize + ",");
-        resultsWriter.print(class3MsgSize);
+        resultsWriter.println(client.getProtocolString() + " Round Trip Latency Test" + (calibration != null ? " (Tool Overhead Subtracted)" : ""));
+        resultsWriter.print("Test Case");
+        for (Integer testClass : testClasses) {
+            resultsWriter.print("," + testClass);
+        }
         resultsWriter.println();
 
+        ArrayList<ResourceUsage> clientUsages = new ArrayList<ResourceUsage>();
+        ArrayList<ResourceUsage> serverUsages = new ArrayList<ResourceUsage>();
+        ArrayList<Long> byteCounts = new ArrayList<Long>();
+        for (Integer testClass : testClasses) {
+            clientUsages.add(new ResourceUsage());
+            serverUsages.add(new ResourceUsage());
+            byteCounts.add(2L * testClass * numOfCases);
+        }
+        boolean serverUsageReported = client.fetchRemoteResourceUsage() != null;
+
         for (int i = 0; i < numOfCases; i++) {
             try {
-                resultsWriter.print((i + 1) + ",");
-                resultsWriter.print(client.echoTest(class1MsgSize) + ",");
-                resultsWriter.print(client.echoTest(class2MsgSize) + ",");
-                resultsWriter.print(client.echoTest(class3MsgSize));
+                resultsWriter.print(i + 1);
+                for (int j = 0; j < testClasses.size(); j++) {
+                    int testClass = testClasses.get(j);
+                    long result = client.echoTest(testClass);
+                    if (calibration != null) {
+                        result = Math.max(0, result - calibration.getEchoOverhead(testClass));
+                    }
+                    resultsWriter.print("," + result);
+                    addResourceUsage(clientUsages.get(j), client.getLastResourceUsage());
+                    if (serverUsageReported) {
+                        addResourceUsage(serverUsages.get(j), client.fetchRemoteResourceUsage());
+                    }
+                }
                 resultsWriter.println();
             }	catch (Exception e) {
                 System.out.println("Round Trip Latency Test " + i + " Failed");
@@ -106,24 +355,179 @@ public class NetworkAnalysisClient {
             }
         }
 
+        printResourceUsage("Client", clientUsages, byteCounts, resultsWriter);
+        if (serverUsageReported) {
+            printResourceUsage("Server", serverUsages, byteCounts, resultsWriter);
+        }
+
         resultsWriter.println();
         System.out.println("Round Trip Latency Test Suite Completed Successfully");
     }
 
+    /* Adds the usage of a single test to a per-class total, counting the test as one operation */
+    private static void addResourceUsage(ResourceUsage total, ResourceUsage testUsage) {
+        total.add(testUsage.getCpuTime(), testUsage.getAllocatedBytes(), 1);
+    }
+
+    private static void printResourceUsage(String side, ArrayList<ResourceUsage> usages, ArrayList<Long> byteCounts, PrintWriter resultsWriter) {
+        printResourceUsage(side, usages, byteCounts, ",", resultsWriter);
+    }
+
+    /* Prints the CPU time per byte moved and the bytes allocated per test for each size class, one row each */
+    private static void printResourceUsage(String side, ArrayList<ResourceUsage> usages, ArrayList<Long> byteCounts, String separator, PrintWriter resultsWriter) {
+        resultsWriter.print(side + " CPU ns/Byte");
+        for (int i = 0; i < usages.size(); i++) {
+            resultsWriter.print((i == 0 ? "," : separator) + usages.get(i).getCpuTimePerByte(byteCounts.get(i)));
+        }
+        resultsWriter.println();
+
+        resultsWriter.print(side + " Allocated Bytes/Op");
+        for (int i = 0; i < usages.size(); i++) {
+            resultsWriter.print((i == 0 ? "," : separator) + usages.get(i).getAllocatedBytesPerOperation());
+        }
+        resultsWriter.println();
+    }
+
+    private static ArrayList<Integer> getRoundTripLatencyTestClasses() {
+        ArrayList<Integer> testClasses = new ArrayList<Integer>();
+        testClasses.add(1);
+        testClasses.add(32);
+        testClasses.add(kilobyte);
+        return testClasses;
+    }
+
+    /* Estimates the remote clock's offset and drift, then measures the delay in each direction separately using messages
+     * of 24 bytes (the smallest that holds the three timestamps) and 1kb. Every result is accurate to within the error
+     * bound of the clock offset estimate.
+     */
+    private static void runOneWayDelayTestSuite(AnalyticHost client, int numOfCases, PrintWriter resultsWriter) throws IOException {
+        int class1MsgSize = AnalyticHost.ONE_WAY_DELAY_MIN_MSG_SIZE;
+        int class2MsgSize = kilobyte;
+        int clockSyncRounds = 32;
+
+        System.out.println("Running " + client.getProtocolString() + " One-Way Delay Test Suite...");
+
+        ClockOffsetEstimate clockOffset;
+        try {
+            clockOffset = client.clockSyncTest(clockSyncRounds);
+        } catch (Exception e) {
+            System.out.println("Clock Synchronization Failed");
+            throw new IOException();
+        }
+
+        resultsWriter.println(client.getProtocolString() + " One-Way Delay Test");
+        resultsWriter.println("Clock Offset," + clockOffset.getOffset());
+        resultsWriter.println("Clock Drift (ppm)," + clockOffset.getDriftPpm());
+        resultsWriter.println("Error Bound," + clockOffset.getErrorBound());
+        resultsWriter.print(",");
+        resultsWriter.print(class1MsgSize + "," + class1MsgSize + ",");
+        resultsWriter.print(class2MsgSize + "," + class2MsgSize);
+        resultsWriter.println();
+        resultsWriter.println("Test Case,Client to Server,Server to Client,Client to Server,Server to Client");
+
+        for (int i = 0; i < numOfCases; i++) {
+            try {
+                resultsWriter.print((i + 1) + ",");
+                ArrayList<Long> class1Results = client.oneWayDelayTest(class1MsgSize, clockOffset);
+                resultsWriter.print(class1Results.get(0) + "," + class1Results.get(1) + ",");
+                ArrayList<Long> class2Results = client.oneWayDelayTest(class2MsgSize, clockOffset);
+                resultsWriter.print(class2Results.get(0) + "," + class2Results.get(1));
+                resultsWriter.println();
+            } catch (Exception e) {
+                System.out.println("One-Way Delay Test " + i + " Failed");
+                throw new IOException();
+            }
+        }
+
+        resultsWriter.println();
+        System.out.println("One-Way Delay Test Suite Completed Successfully");
+    }
+
+    /* Measures how many 32 byte echo requests per second the path sustains with 1, 4, 16 and 64 requests in flight.
+     * Outputs the rate and latency distribution for each pipeline depth.
+     */
+    private static void runPipelinedEchoTestSuite(AnalyticHost client, int requestCount, PrintWriter resultsWriter) throws IOException {
+        int msgSize = 32;
+        int[] pipelineDepths = {1, 4, 16, 64};
+
+        System.out.println("Running " + client.getProtocolString() + " Pipelined Echo Test Suite...");
+
+        resultsWriter.println(client.getProtocolString() + " Pipelined Echo Test (" + requestCount + " Requests of " + msgSize + " Bytes)");
+        resultsWriter.println("Pipeline Depth,Ops/s,Completed,Lost,Min,50th Percentile,90th Percentile,99th Percentile,Max");
+
+        for (int pipelineDepth : pipelineDepths) {
+            try {
+                PipelinedEchoResult result = client.pipelinedEchoTest(requestCount, msgSize, pipelineDepth);
+                LatencyDistribution latencies = result.getLatencies();
+                resultsWriter.print(pipelineDepth + ",");
+                resultsWriter.print(result.getOperationsPerSecond() + ",");
+                resultsWriter.print(result.getCompletedCount() + ",");
+                resultsWriter.print(result.getLostCount() + ",");
+                resultsWriter.print(latencies.getMin() + ",");
+                resultsWriter.print(latencies.getPercentile(50) + ",");
+                resultsWriter.print(latencies.getPercentile(90) + ",");
+                resultsWriter.print(latencies.getPercentile(99) + ",");
+                resultsWriter.print(latencies.getMax());
+                resultsWriter.println();
+            } catch (Exception e) {
+                System.out.println("Pipelined Echo Test With Depth " + pipelineDepth + " Failed");
+                throw new IOException();
+            }
+        }
+
+        resultsWriter.println();
+        System.out.println("Pipelined Echo Test Suite Completed Successfully");
+    }
+
+    /* Ramps the offered load with pipelined echo trials until the path saturates, then reports the highest goodput it
+     * sustained, the load past which goodput stopped growing and the load at which tail latency or loss degraded.
+     * Messages over datagrams are kept within one packet, as larger ones are not reassembled out of order.
+     */
+    private static void runCapacitySearchSuite(AnalyticHost client, int maxMsgSize, PrintWriter resultsWriter) throws IOException {
+        System.out.println("Running " + client.getProtocolString() + " Capacity Search...");
+
+        CapacitySearch search = new CapacitySearch(client, maxMsgSize);
+        try {
+            search.run();
+        } catch (Exception e) {
+            System.out.println("Capacity Search Failed");
+            throw new IOException();
+        }
+
+        resultsWriter.println(client.getProtocolString() + " Capacity Search");
+        resultsWriter.println("Trial,Msg Size,Pipeline Depth,Goodput (Bytes/s),Ops/s,Loss Rate,50th Percentile,99th Percentile,Sustainable");
+        for (int i = 0; i < search.getTrials().size(); i++) {
+            resultsWriter.println((i + 1) + "," + getCapacitySearchTrialRow(search.getTrials().get(i)));
+        }
+        resultsWriter.println();
+
+        resultsWriter.println(",Msg Size,Pipeline Depth,Goodput (Bytes/s),Ops/s,Loss Rate,50th Percentile,99th Percentile,Sustainable");
+        resultsWriter.println("Baseline," + getCapacitySearchTrialRow(search.getBaseline()));
+        CapacitySearch.Trial maxSustainable = search.getMaxSustainableTrial();
+        resultsWriter.println("Max Sustainable Rate," + (maxSustainable != null ? getCapacitySearchTrialRow(maxSustainable) : "None"));
+        resultsWriter.println("Throughput Knee," + getCapacitySearchTrialRow(search.getKnee()));
+        CapacitySearch.Trial degradation = search.getDegradation();
+        resultsWriter.println("p99 Degradation," + (degradation != null ? getCapacitySearchTrialRow(degradation) : "Not Reached"));
+
+        resultsWriter.println();
+        System.out.println("Capacity Search Completed Successfully");
+    }
+
+    private static String getCapacitySearchTrialRow(CapacitySearch.Trial trial) {
+        return trial.getMsgSize() + "," + trial.getPipelineDepth() + "," + (long)trial.getGoodput() + ","
+                + trial.getResult().getOperationsPerSecond() + "," + trial.getLossRate() + ","
+                + trial.getResult().getLatencies().getPercentile(50) + "," + trial.getP99() + "," + trial.isSustainable();
+    }
+
     /* Measures round-trip latency time with the remote host in both directions using messages of 1, 16, 64, and 256kb.
      * Outputs the results in both directions. These metrics will then be used to estimate throughput.
      */
-    private static void runThroughputTestSuite(AnalyticHost client, int numOfCases, PrintWriter resultsWriter) throws IOException{
-        ArrayList<Integer> testClasses = new ArrayList<Integer>();
-        testClasses.add(kilobyte);
-        testClasses.add(16 * kilobyte);
-        testClasses.add(64 * kilobyte);
-        testClasses.add(256 * kilobyte);
-        testClasses.add(megabyte);
+    private static void runThroughputTestSuite(AnalyticHost client, int numOfCases, ToolOverheadCalibration calibration, PrintWriter resultsWriter) throws IOException{
+        ArrayList<Integer> testClasses = getThroughputTestClasses();
 
         System.out.println("Running " + client.getProtocolString() + " Throughput Test Suite...");
 
-        resultsWriter.println(client.getProtocolString() + " Throughput Test");
+        resultsWriter.println(client.getProtocolString() + " Throughput Test" + (calibration != null ? " (Tool Overhead Subtracted)" : ""));
         resultsWriter.print(",");
         for (Integer testClass : testClasses){
             resultsWriter.print(testClass + "," + testClass + ',');
@@ -136,13 +540,33 @@ public class NetworkAnalysisClient {
         }
         resultsWriter.println();
 
+        ArrayList<ResourceUsage> clientUsages = new ArrayList<ResourceUsage>();
+        ArrayList<ResourceUsage> serverUsages = new ArrayList<ResourceUsage>();
+        ArrayList<Long> byteCounts = new ArrayList<Long>();
+        for (Integer testClass : testClasses) {
+            clientUsages.add(new ResourceUsage());
+            serverUsages.add(new ResourceUsage());
+            byteCounts.add(2L * testClass * numOfCases);
+        }
+        boolean serverUsageReported = false;
+
         for (int i = 0; i < numOfCases; i++) {
             try {
                 resultsWriter.print((i + 1) + ",");
-                for (Integer testClass : testClasses) {
+                for (int j = 0; j < testClasses.size(); j++) {
+                    int testClass = testClasses.get(j);
                     ArrayList<Long> results = client.throughputTest(testClass);
+                    if (calibration != null) {
+                        results.set(0, Math.max(0, results.get(0) - calibration.getClientToServerOverhead(testClass)));
+                        results.set(1, Math.max(0, results.get(1) - calibration.getServerToClientOverhead(testClass)));
+                    }
                     resultsWriter.print(results.get(0) + ",");
                     resultsWriter.print(results.get(1) + ",");
+                    addResourceUsage(clientUsages.get(j), client.getLastResourceUsage());
+                    if (results.size() > 3) {
+                        serverUsages.get(j).add(results.get(2), results.get(3), 1);
+                        serverUsageReported = true;
+                    }
                 }
                 resultsWriter.println();
             } catch (Exception e) {
@@ -151,12 +575,410 @@ public class NetworkAnalysisClient {
             }
         }
 
+        //each size class spans two columns, so the usage rows leave the second one empty
+        printResourceUsage("Client", clientUsages, byteCounts, ",,", resultsWriter);
+        if (serverUsageReported) {
+            printResourceUsage("Server", serverUsages, byteCounts, ",,", resultsWriter);
+        }
+
         resultsWriter.println();
         System.out.println("Throughput Test Suite Completed Successfully");
     }
 
+    /* Alternates sequential throughput tests with full-duplex ones that move the same bytes in both directions at once.
+     * Outputs the times of every case, then the mean throughput of each direction and their sum for both tests. A
+     * full-duplex sum well below the sequential sum points to a shared bottleneck, such as a half-duplex link, ACK
+     * compression or a queue both directions pass through.
+     */
+    private static void runFullDuplexThroughputTestSuite(AnalyticHost client, int numOfCases, PrintWriter resultsWriter) throws IOException {
+        ArrayList<Integer> testClasses = getThroughputTestClasses();
+        String[] columns = {"Sequential Client to Server", "Sequential Server to Client", "Full-Duplex Client to Server", "Full-Duplex Server to Client"};
+
+        System.out.println("Running " + client.getProtocolString() + " Full-Duplex Throughput Test Suite...");
+
+        resultsWriter.println(client.getProtocolString() + " Full-Duplex Throughput Test");
+        resultsWriter.print(",");
+        for (Integer testClass : testClasses) {
+            for (int i = 0; i < columns.length; i++) {
+                resultsWriter.print(testClass + ",");
+            }
+        }
+        resultsWriter.println();
+
+        resultsWriter.print("Test Case,");
+        for (int i = 0; i < testClasses.size(); i++) {
+            for (String column : columns) {
+                resultsWriter.print(column + ",");
+            }
+        }
+        resultsWriter.println();
+
+        long[][] timeSums = new long[testClasses.size()][columns.length];
+        for (int i = 0; i < numOfCases; i++) {
+            try {
+                resultsWriter.print((i + 1) + ",");
+                for (int j = 0; j < testClasses.size(); j++) {
+                    int testClass = testClasses.get(j);
+                    ArrayList<Long> sequential = client.throughputTest(testClass);
+                    ArrayList<Long> fullDuplex = client.fullDuplexThroughputTest(testClass, testClass);
+                    long[] times = {sequential.get(0), sequential.get(1), fullDuplex.get(0), fullDuplex.get(1)};
+                    for (int k = 0; k < times.length; k++) {
+                        resultsWriter.print(times[k] + ",");
+                        timeSums[j][k] += times[k];
+                    }
+                }
+                resultsWriter.println();
+            } catch (Exception e) {
+                System.out.println("Full-Duplex Throughput Test " + i + " Failed");
+                throw new IOException();
+            }
+        }
+        resultsWriter.println();
+
+        resultsWriter.println("Msg Size,Sequential Client to Server (Bytes/s),Sequential Server to Client (Bytes/s),Sequential Sum (Bytes/s),"
+                + "Full-Duplex Client to Server (Bytes/s),Full-Duplex Server to Client (Bytes/s),Full-Duplex Sum (Bytes/s),Full-Duplex / Sequential");
+        for (int j = 0; j < testClasses.size(); j++) {
+            int testClass = testClasses.get(j);
+            double[] rates = new double[columns.length];
+            for (int k = 0; k < columns.length; k++) {
+                rates[k] = timeSums[j][k] == 0 ? 0 : testClass * 1e9 * numOfCases / timeSums[j][k];
+            }
+            double sequentialSum = rates[0] + rates[1];
+            double fullDuplexSum = rates[2] + rates[3];
+
+            resultsWriter.print(testClass + ",");
+            resultsWriter.print((long)rates[0] + "," + (long)rates[1] + "," + (long)sequentialSum + ",");
+            resultsWriter.print((long)rates[2] + "," + (long)rates[3] + "," + (long)fullDuplexSum + ",");
+            resultsWriter.print(sequentialSum == 0 ? 0 : fullDuplexSum / sequentialSum);
+            resultsWriter.println();
+        }
+
+        resultsWriter.println();
+        System.out.println("Full-Duplex Throughput Test Suite Completed Successfully");
+    }
+
+    private static ArrayList<Integer> getThroughputTestClasses() {
+        ArrayList<Integer> testClasses = new ArrayList<Integer>();
+        testClasses.add(kilobyte);
+        testClasses.add(16 * kilobyte);
+        testClasses.add(64 * kilobyte);
+        testClasses.add(256 * kilobyte);
+        testClasses.add(megabyte);
+        return testClasses;
+    }
+
+    /* Runs the round trip latency and throughput tests between two in-process loopback hosts and outputs the median of
+     * each size class, which is the cost of the tool itself for that test.
+     */
+    private static ToolOverheadCalibration runToolOverheadCalibration(int numOfCases, PrintWriter resultsWriter) throws IOException {
+        ArrayList<Integer> echoClasses = getRoundTripLatencyTestClasses();
+        ArrayList<Integer> throughputClasses = getThroughputTestClasses();
+
+        System.out.println("Running Tool Overhead Calibration...");
+
+        ToolOverheadCalibration calibration = new ToolOverheadCalibration();
+        calibration.calibrate(echoClasses, throughputClasses, numOfCases);
+
+        resultsWriter.println("Tool Overhead Calibration (Median of " + numOfCases + " Loopback Cases)");
+        resultsWriter.println("Msg Size,Round Trip,Client to Server,Server to Client");
+        for (Integer echoClass : echoClasses) {
+            resultsWriter.println(echoClass + "," + calibration.getEchoOverhead(echoClass) + ",,");
+        }
+        for (Integer throughputClass : throughputClasses) {
+            resultsWriter.println(throughputClass + ",," + calibration.getClientToServerOverhead(throughputClass)
+                    + "," + calibration.getServerToClientOverhead(throughputClass));
+        }
+
+        resultsWriter.println();
+        System.out.println("Tool Overhead Calibration Completed Successfully");
+        return calibration;
+    }
+
+    /* Sends fire-and-forget UDP probe streams at VoIP-like rates and sizes (a 20 ms G.711 stream, the same stream at twice
+     * the rate, and a 1 ms stream of 512 byte probes). Outputs the loss rate, duplicates, reordering and RFC 3550 jitter
+     * measured by the receiver.
+     */
+    private static void runProbeStreamTestSuite(AnalyticUDPHost client, int numOfCases, int packetCount, PrintWriter resultsWriter) throws IOException {
+        int[][] streamClasses = {{50, 172}, {100, 172}, {1000, 512}};
+
+        System.out.println("Running " + client.getProtocolString() + " Probe Stream Test Suite...");
+
+        resultsWriter.println(client.getProtocolString() + " Probe Stream Test");
+        resultsWriter.print(",");
+        for (int[] streamClass : streamClasses) {
+            String label = streamClass[0] + " pps x " + streamClass[1] + " bytes";
+            resultsWriter.print(label + "," + label + "," + label + "," + label + "," + label + ",");
+        }
+        resultsWriter.println();
+
+        resultsWriter.print("Test Case,");
+        for (int i = 0; i < streamClasses.length; i++) {
+            resultsWriter.print("Loss Rate,Duplicates,Reordered,Max Reorder Depth,Jitter,");
+        }
+        resultsWriter.println();
+
+        for (int i = 0; i < numOfCases; i++) {
+            try {
+                resultsWriter.print((i + 1) + ",");
+                for (int[] streamClass : streamClasses) {
+                    ProbeStreamStatistics results = client.probeStreamTest(packetCount, streamClass[1], streamClass[0]);
+                    resultsWriter.print(results.getLossRate() + ",");
+                    resultsWriter.print(results.getDuplicateCount() + ",");
+                    resultsWriter.print(results.getReorderedCount() + ",");
+                    resultsWriter.print(results.getMaxReorderDepth() + ",");
+                    resultsWriter.print(results.getJitter() + ",");
+                }
+                resultsWriter.println();
+            } catch (IOException e) {
+                System.out.println("Probe Stream Test " + i + " Failed");
+                throw new IOException();
+            }
+        }
+
+        resultsWriter.println();
+        System.out.println("Probe Stream Test Suite Completed Successfully");
+    }
+
+    /* Steps a rate-limited probe stream through offered loads of 1, 2 and 5 times each power of ten Mbit/s, up to
+     * maxRate Mbit/s, for half a second each, and records the loss, jitter and receiver goodput at every step. The curve
+     * stops early once more than half the probes are lost, as heavier loads only flood the path.
+     */
+    private static void runLossVersusRateTestSuite(AnalyticUDPHost client, int maxRate, PrintWriter resultsWriter) throws IOException {
+        int packetSize = 1200;
+        double stepDuration = 0.5;
+        double lossCutoff = 0.5;
+        int[] rateSteps = {1, 2, 5};
+
+        System.out.println("Running " + client.getProtocolString() + " Loss Versus Rate Test Suite...");
+
+        resultsWriter.println(client.getProtocolString() + " Loss Versus Offered Rate (" + packetSize + " Byte Probes)");
+        resultsWriter.println("Target Rate (bit/s),Offered Rate (bit/s),Receiver Goodput (bit/s),Probes,Loss Rate,Reordered,Jitter");
+
+        for (long decade = 1; decade <= maxRate; decade *= 10) {
+            for (int rateStep : rateSteps) {
+                long rate = rateStep * decade;
+                if (rate > maxRate) {
+                    break;
+                }
+                double bitsPerSecond = rate * 1e6;
+                int packetCount = (int)Math.max(100, bitsPerSecond * stepDuration / (packetSize * 8));
+
+                ProbeStreamStatistics results;
+                try {
+                    results = client.probeStreamTest(packetCount, packetSize, TokenBucketPacer.bitsPerSecond(bitsPerSecond, AnalyticUDPHost.PACING_BURST_PACKETS * packetSize));
+                } catch (IOException e) {
+                    System.out.println("Loss Versus Rate Test at " + rate + " Mbit/s Failed");
+                    throw new IOException();
+                }
+                double offeredRate = packetCount * packetSize * 8.0 * 1e9 / client.getLastProbeStreamSendTime();
+
+                resultsWriter.print((long)bitsPerSecond + ",");
+                resultsWriter.print((long)offeredRate + ",");
+                resultsWriter.print((long)results.getGoodput() + ",");
+                resultsWriter.print(packetCount + ",");
+                resultsWriter.print(results.getLossRate() + ",");
+                resultsWriter.print(results.getReorderedCount() + ",");
+                resultsWriter.print(results.getJitter());
+                resultsWriter.println();
+
+                if (results.getLossRate() > lossCutoff) {
+                    resultsWriter.println();
+                    System.out.println("Loss Versus Rate Test Suite Completed Successfully");
+                    return;
+                }
+            }
+        }
+
+        resultsWriter.println();
+        System.out.println("Loss Versus Rate Test Suite Completed Successfully");
+    }
+
+    /* Runs 1 MB throughput tests with forward error correction off and then on, with one parity packet per blockSize
+     * packets. For each it outputs the mean transfer times, the retransmission rounds both receivers needed, the packets
+     * rebuilt from parity and the rounds that forward error correction avoided outright.
+     */
+    private static void runForwardErrorCorrectionTestSuite(AnalyticUDPHost client, int numOfCases, int blockSize, PrintWriter resultsWriter) throws IOException {
+        int[] blockSizes = {0, blockSize};
+
+        System.out.println("Running " + client.getProtocolString() + " Forward Error Correction Test Suite...");
+
+        resultsWriter.println(client.getProtocolString() + " Forward Error Correction Test (" + megabyte + " Byte Messages, "
+                + numOfCases + " Cases)");
+        resultsWriter.println("Block Size,Overhead,Mean Client to Server,Mean Server to Client,Messages,Retransmission Rounds,"
+                + "Recovered Packets,Rounds Avoided");
+
+        try {
+            for (int size : blockSizes) {
+                client.setForwardErrorCorrection(size);
+                client.getForwardErrorCorrectionStatistics().reset();
+
+                long clientToServerSum = 0;
+                long serverToClientSum = 0;
+                for (int i = 0; i < numOfCases; i++) {
+                    ArrayList<Long> results = client.throughputTest(megabyte);
+                    clientToServerSum += results.get(0);
+                    serverToClientSum += results.get(1);
+                }
+
+                //switching off returns the server's statistics for the run, so both directions are counted
+                ForwardErrorCorrectionStatistics statistics = client.setForwardErrorCorrection(0);
+                statistics.add(client.getForwardErrorCorrectionStatistics());
+
+                resultsWriter.print(size + ",");
+                resultsWriter.print((size == 0 ? 0 : 1.0 / size) + ",");
+                resultsWriter.print((clientToServerSum / numOfCases) + ",");
+                resultsWriter.print((serverToClientSum / numOfCases) + ",");
+                resultsWriter.print(statistics.getMessageCount() + ",");
+                resultsWriter.print(statistics.getRetransmissionRounds() + ",");
+                resultsWriter.print(statistics.getRecoveredPackets() + ",");
+                resultsWriter.print(statistics.getRoundsAvoided());
+                resultsWriter.println();
+            }
+        } catch (Exception e) {
+            System.out.println("Forward Error Correction Test Failed");
+            throw new IOException();
+        }
+
+        resultsWriter.println();
+        System.out.println("Forward Error Correction Test Suite Completed Successfully");
+    }
+
+    /* Measures the latency distribution of opening one connection at a time, then the sustained rate of short-lived
+     * connections with 1, 4, 16 and 64 concurrent connectors for two seconds each. Outputs the connect(), first byte and
+     * connect-to-accept latencies along with the number of connects that failed or timed out.
+     */
+    private static void runConnectionSetupTestSuite(AnalyticTCPHost client, int numOfCases, PrintWriter resultsWriter) throws IOException {
+        int[] concurrencyClasses = {1, 4, 16, 64};
+        long churnDuration = 2000;
+        long setupTimeLimit = 60000;
+
+        System.out.println("Running " + client.getProtocolString() + " Connection Setup Test Suite...");
+
+        ClockOffsetEstimate clockOffset;
+        try {
+            clockOffset = client.clockSyncTest(32);
+        } catch (Exception e) {
+            System.out.println("Clock Synchronization Failed");
+            throw new IOException();
+        }
+
+        ConnectionSetupResult setupResult = client.connectionSetupTest(numOfCases, 1, setupTimeLimit, clockOffset);
+        resultsWriter.println(client.getProtocolString() + " Connection Setup Latency Test (" + numOfCases + " Sequential Connections)");
+        resultsWriter.println("Clock Offset Error Bound," + clockOffset.getErrorBound());
+        resultsWriter.println("Succeeded,Failed,Timed Out");
+        resultsWriter.println(setupResult.getSucceededCount() + "," + setupResult.getFailedCount() + "," + setupResult.getTimedOutCount());
+        resultsWriter.println("Stage,Min,50th Percentile,90th Percentile,99th Percentile,Max");
+        printLatencyDistribution("Connect", setupResult.getConnectLatencies(), resultsWriter);
+        resultsWriter.println();
+        printLatencyDistribution("Connect and First Byte", setupResult.getFirstByteLatencies(), resultsWriter);
+        resultsWriter.println();
+        printLatencyDistribution("Connect Start to Accept", setupResult.getAcceptLatencies(), resultsWriter);
+        resultsWriter.println();
+        resultsWriter.println();
+
+        resultsWriter.println(client.getProtocolString() + " Connection Churn Test (" + churnDuration + " ms per Concurrency Level)");
+        resultsWriter.println("Concurrent Connectors,Connections/s,Succeeded,Failed,Timed Out,Accepted,50th Percentile Connect,99th Percentile Connect");
+        double maxConnectionsPerSecond = 0;
+        for (int concurrency : concurrencyClasses) {
+            ConnectionSetupResult churnResult = client.connectionSetupTest(Integer.MAX_VALUE, concurrency, churnDuration, clockOffset);
+            maxConnectionsPerSecond = Math.max(maxConnectionsPerSecond, churnResult.getConnectionsPerSecond());
+            resultsWriter.print(concurrency + ",");
+            resultsWriter.print(churnResult.getConnectionsPerSecond() + ",");
+            resultsWriter.print(churnResult.getSucceededCount() + ",");
+            resultsWriter.print(churnResult.getFailedCount() + ",");
+            resultsWriter.print(churnResult.getTimedOutCount() + ",");
+            resultsWriter.print(churnResult.getAcceptedCount() + ",");
+            resultsWriter.print(churnResult.getConnectLatencies().getPercentile(50) + ",");
+            resultsWriter.print(churnResult.getConnectLatencies().getPercentile(99));
+            resultsWriter.println();
+        }
+        resultsWriter.println("Max Sustained Connections/s," + maxConnectionsPerSecond);
+
+        resultsWriter.println();
+        System.out.println("Connection Setup Test Suite Completed Successfully");
+    }
+
+    /* Measures the latency of full handshakes, each with a new session, and of handshakes that resume a session */
+    private static void runHandshakeTestSuite(AnalyticTLSHost client, int numOfCases, PrintWriter resultsWriter) throws IOException {
+        System.out.println("Running " + client.getProtocolString() + " Handshake Test Suite...");
+
+        HandshakeResult fullHandshakes = client.handshakeTest(numOfCases, false);
+        HandshakeResult resumedHandshakes = client.handshakeTest(numOfCases, true);
+
+        resultsWriter.println(client.getProtocolString() + " Handshake Test (" + numOfCases + " Handshakes Each)");
+        resultsWriter.println("Handshake,Min,50th Percentile,90th Percentile,99th Percentile,Max,Resumed");
+        printLatencyDistribution("Full", fullHandshakes.getLatencies(), resultsWriter);
+        resultsWriter.println("," + fullHandshakes.getResumedCount());
+        printLatencyDistribution("Resumed", resumedHandshakes.getLatencies(), resultsWriter);
+        resultsWriter.println("," + resumedHandshakes.getResumedCount());
+
+        resultsWriter.println();
+        System.out.println("Handshake Test Suite Completed Successfully");
+    }
+
+    private static void printLatencyDistribution(String label, LatencyDistribution latencies, PrintWriter resultsWriter) {
+        resultsWriter.print(label + ",");
+        resultsWriter.print(latencies.getMin() + ",");
+        resultsWriter.print(latencies.getPercentile(50) + ",");
+        resultsWriter.print(latencies.getPercentile(90) + ",");
+        resultsWriter.print(latencies.getPercentile(99) + ",");
+        resultsWriter.print(latencies.getMax());
+    }
+
+    /* Sends one second of 172 byte multicast probes at 1000, 10000 and 50000 packets per second to 1, 4 and 16 local
+     * receivers. Outputs each receiver's loss, latency and jitter, then an aggregate over the receivers of each trial
+     * that shows how delivery degrades as the send rate and receiver count grow.
+     */
+    private static void runMulticastFanOutTestSuite(MulticastFanOutTest test, PrintWriter resultsWriter) throws IOException {
+        int packetSize = 172;
+        int[] receiverCounts = {1, 4, 16};
+        int[] sendRates = {1000, 10000, 50000};
+
+        System.out.println("Running Multicast Fan-Out Test Suite on " + test.getInterfaceName() + "...");
+
+        ArrayList<String> aggregateRows = new ArrayList<String>();
+        resultsWriter.println("Multicast Fan-Out Test (" + packetSize + " Byte Probes on " + test.getInterfaceName() + ")");
+        resultsWriter.println("Packets/s,Receivers,Receiver,Loss Rate,Mean Latency,Max Latency,Jitter");
+        for (int receiverCount : receiverCounts) {
+            for (int sendRate : sendRates) {
+                ArrayList<ProbeStreamStatistics> results = test.run(receiverCount, sendRate, packetSize, sendRate);
+
+                double lossRateSum = 0, maxLossRate = 0, latencySum = 0, jitterSum = 0;
+                long maxLatency = 0, maxJitter = 0;
+                for (int i = 0; i < results.size(); i++) {
+                    ProbeStreamStatistics result = results.get(i);
+                    resultsWriter.print(sendRate + "," + receiverCount + "," + (i + 1) + ",");
+                    resultsWriter.print(result.getLossRate() + ",");
+                    resultsWriter.print(result.getMeanTransitTime() + ",");
+                    resultsWriter.print(result.getMaxTransitTime() + ",");
+                    resultsWriter.print(result.getJitter());
+                    resultsWriter.println();
+
+                    lossRateSum += result.getLossRate();
+                    maxLossRate = Math.max(maxLossRate, result.getLossRate());
+                    latencySum += result.getMeanTransitTime();
+                    maxLatency = Math.max(maxLatency, result.getMaxTransitTime());
+                    jitterSum += result.getJitter();
+                    maxJitter = Math.max(maxJitter, result.getJitter());
+                }
+                aggregateRows.add(sendRate + "," + receiverCount + "," + (lossRateSum / receiverCount) + "," + maxLossRate + ","
+                        + (long)(latencySum / receiverCount) + "," + maxLatency + "," + (long)(jitterSum / receiverCount) + "," + maxJitter);
+            }
+        }
+        resultsWriter.println();
+
+        resultsWriter.println("Multicast Fan-Out Aggregate");
+        resultsWriter.println("Packets/s,Receivers,Mean Loss Rate,Max Loss Rate,Mean Latency,Max Latency,Mean Jitter,Max Jitter");
+        for (String aggregateRow : aggregateRows) {
+            resultsWriter.println(aggregateRow);
+        }
+
+        resultsWriter.println();
+        System.out.println("Multicast Fan-Out Test Suite Completed Successfully");
+    }
+
     /* Measures the time it takes to fully transfer a 1MB message using TCP with fixed-size packets of 512 bytes, 1kb, 2kb, or 4kb */
-    private static void runPacketTransferTestSuite(AnalyticTCPHost client, int numOfCases, PrintWriter resultsWriter) throws IOException {
+    private static void runPacketTransferTestSuite(AnalyticHost client, int numOfCases, PrintWriter resultsWriter) throws IOException {
         int totalMsgSize = megabyte;
         ArrayList<Integer> packetSizeClasses = new ArrayList<Integer>();
         packetSizeClasses.add(4 * kilobyte);
@@ -174,12 +996,26 @@ public class NetworkAnalysisClient {
         }
         resultsWriter.println();
 
+        ArrayList<ResourceUsage> clientUsages = new ArrayList<ResourceUsage>();
+        ArrayList<ResourceUsage> serverUsages = new ArrayList<ResourceUsage>();
+        ArrayList<Long> byteCounts = new ArrayList<Long>();
+        for (int j = 0; j < packetSizeClasses.size(); j++) {
+            clientUsages.add(new ResourceUsage());
+            serverUsages.add(new ResourceUsage());
+            byteCounts.add((long)totalMsgSize * numOfCases);
+        }
+        boolean serverUsageReported = client.fetchRemoteResourceUsage() != null;
+
         for (int i = 0; i < numOfCases; i++) {
             try {
                 resultsWriter.print((i + 1) + ",");
-                for (Integer packetSize : packetSizeClasses) {
-                    long value = client.packetTransferTest(totalMsgSize, packetSize);
+                for (int j = 0; j < packetSizeClasses.size(); j++) {
+                    long value = client.packetTransferTest(totalMsgSize, packetSizeClasses.get(j));
                     resultsWriter.print( value + ",");
+                    addResourceUsage(clientUsages.get(j), client.getLastResourceUsage());
+                    if (serverUsageReported) {
+                        addResourceUsage(serverUsages.get(j), client.fetchRemoteResourceUsage());
+                    }
                 }
                 resultsWriter.println();
             } catch (IOException e) {
@@ -188,6 +1024,11 @@ public class NetworkAnalysisClient {
             }
         }
 
+        printResourceUsage("Client", clientUsages, byteCounts, resultsWriter);
+        if (serverUsageReported) {
+            printResourceUsage("Server", serverUsages, byteCounts, resultsWriter);
+        }
+
         resultsWriter.println();
         System.out.println("Packet Transfer Test Suite Completed Successfully");
     }
@@ -1,23 +1,121 @@
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 
 public class NetworkAnalysisServer {
 
+    public static final String[] TRANSPORTS = {"udp", "tcp", "tls", "unix"};
+    public static final String[] DEFAULT_TRANSPORTS = {"udp", "tcp", "tls"};
+
+    /* Serves one client session on each selected transport in turn. The transports are given as arguments, e.g.
+     * "udp tcp unix", and are always served in the order of TRANSPORTS, which is the order the client runs them in.
+     * A "--trace=<file>" argument records every packet the server sends and receives to the given trace file, and
+     * "--daemon" serves the first selected transport indefinitely for a client running in daemon mode.
+     */
     public static void main(String[] args) {
         int maxNumberOfRequests = 1;
+        String traceFileName = null;
+        boolean daemon = false;
+
+        ArrayList<String> transports = new ArrayList<String>();
+        for (String arg : args) {
+            if (arg.startsWith("--trace=")) {
+                traceFileName = arg.substring("--trace=".length());
+            }
+            else if (arg.equals("--daemon")) {
+                daemon = true;
+            }
+            else {
+                transports.add(arg);
+            }
+        }
+        if (transports.isEmpty()) {
+            transports.addAll(Arrays.asList(DEFAULT_TRANSPORTS));
+        }
+
+        for (String transport : transports) {
+            if (!Arrays.asList(TRANSPORTS).contains(transport)) {
+                System.out.println("Unknown transport: " + transport);
+                System.out.println("Usage: NetworkAnalysisServer [" + String.join("] [", TRANSPORTS) + "] [--trace=<trace file>] [--daemon]");
+                return;
+            }
+        }
 
         AnalyticHost udpServer = new AnalyticUDPHost();
         AnalyticHost tcpServer = new AnalyticTCPHost();
+        AnalyticHost tlsServer = new AnalyticTLSHost();
+        AnalyticHost unixDomainServer = new AnalyticUnixDomainHost();
+
+        PacketTracer tracer = null;
+        if (traceFileName != null) {
+            try {
+                tracer = new PacketTracer(traceFileName);
+            } catch (IOException e) {
+                return;
+            }
+            udpServer.setPacketTracer(tracer);
+            tcpServer.setPacketTracer(tracer);
+            tlsServer.setPacketTracer(tracer);
+            unixDomainServer.setPacketTracer(tracer);
+        }
+
+        //a session ends whenever the daemon reconnects after a failed probe, so keep accepting new ones
+        if (daemon) {
+            AnalyticHost daemonServer = tcpServer;
+            if (transports.get(0).equals("udp")) {
+                daemonServer = udpServer;
+            }
+            else if (transports.get(0).equals("tls")) {
+                daemonServer = tlsServer;
+            }
+            else if (transports.get(0).equals("unix")) {
+                daemonServer = unixDomainServer;
+            }
+
+            while (true) {
+                try {
+                    daemonServer.startServer(maxNumberOfRequests);
+                } catch (IOException e) {
+                    System.out.println("An IOException occurred on the " + transports.get(0) + " server");
+                }
+            }
+        }
+
+        if (transports.contains("udp")) {
+            try {
+                udpServer.startServer(maxNumberOfRequests);
+            } catch (IOException e){
+                System.out.println("An IOException occurred on the udp server");
+            }
+        }
+
+        if (transports.contains("tcp")) {
+            try {
+                tcpServer.startServer(maxNumberOfRequests);
+            } catch (IOException e){
+                System.out.println("An IOException occurred on the tcp server");
+            }
+        }
+
+        //the client connects once per cipher suite
+        if (transports.contains("tls")) {
+            try {
+                tlsServer.startServer(AnalyticTLSHost.getSupportedCipherSuites().size());
+            } catch (IOException e){
+                System.out.println("An IOException occurred on the tls server");
+            }
+        }
 
-        try {
-            udpServer.startServer(maxNumberOfRequests);
-        } catch (IOException e){
-            System.out.println("An IOException occurred on the udp server");
+        if (transports.contains("unix")) {
+            try {
+                unixDomainServer.startServer(maxNumberOfRequests);
+            } catch (IOException e){
+                System.out.println("An IOException occurred on the unix domain socket server");
+            }
         }
 
-       try {
-            tcpServer.startServer(maxNumberOfRequests);
-        } catch (IOException e){
-            System.out.println("An IOException occurred on the tcp server");
+        if (tracer != null) {
+            tracer.close();
         }
     }
 }
@@ -0,0 +1,123 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Records per-packet events to a memory-mapped ring file so that retransmission rounds and stalls can be examined after a
+ * run with TraceDecoder. Records have a fixed size and each writer claims its slot with a single atomic increment, so no
+ * lock is taken while tracing; once the ring is full the oldest records are overwritten. The count in the header only
+ * ever grows and only covers completely written records, so a trace read while writers are active holds no partial one.
+ *
+ * File layout:
+ *   header: magic (4) | format version (4) | record size (4) | capacity (4) | records written (8) | reserved (8)
+ *   record: timestamp (8) | session id (4) | event type (4) | packet number (4) | size (4)
+ */
+public class PacketTracer {
+
+    public static final int MAGIC = 0x4E415452;
+    public static final int FORMAT_VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int RECORD_SIZE = 24;
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    static final int RECORD_SIZE_OFFSET = 8;
+    static final int CAPACITY_OFFSET = 12;
+    static final int RECORD_COUNT_OFFSET = 16;
+
+    static final int TIMESTAMP_OFFSET = 0;
+    static final int SESSION_ID_OFFSET = 8;
+    static final int EVENT_TYPE_OFFSET = 12;
+    static final int PACKET_NUMBER_OFFSET = 16;
+    static final int SIZE_OFFSET = 20;
+
+    static final VarHandle RECORD_COUNT = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    /* For MESSAGE_SEND_START and MESSAGE_RECEIVE_START the packet number holds the message's packet count and the size its
+     * length. For NACK_SENT and NACK_RECEIVED the packet number holds the number of packets requested.
+     */
+    public static final int MESSAGE_SEND_START = 1;
+    public static final int MESSAGE_RECEIVE_START = 2;
+    public static final int PACKET_SENT = 3;
+    public static final int PACKET_RETRANSMITTED = 4;
+    public static final int PACKET_RECEIVED = 5;
+    public static final int PACKET_DUPLICATE = 6;
+    public static final int NACK_SENT = 7;
+    public static final int NACK_RECEIVED = 8;
+    public static final int MESSAGE_COMPLETE = 9;
+    public static final int PARITY_SENT = 10;
+    public static final int PARITY_RECEIVED = 11;
+    public static final int PACKET_RECOVERED = 12;
+
+    static final String[] EVENT_NAMES = {"", "Message Send Start", "Message Receive Start", "Packet Sent",
+            "Packet Retransmitted", "Packet Received", "Packet Duplicate", "NACK Sent", "NACK Received", "Message Complete",
+            "Parity Sent", "Parity Received", "Packet Recovered"};
+
+    MappedByteBuffer buffer;
+    int capacity;
+    AtomicLong recordCount;
+    AtomicLong completedCount;
+
+    public PacketTracer(String fileName) throws IOException {
+        this(fileName, DEFAULT_CAPACITY);
+    }
+
+    public PacketTracer(String fileName, int capacity) throws IOException {
+        this.capacity = capacity;
+        this.recordCount = new AtomicLong();
+        this.completedCount = new AtomicLong();
+
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "rw"); FileChannel channel = file.getChannel()) {
+            file.setLength(0);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long)capacity * RECORD_SIZE);
+        } catch (IOException e) {
+            System.out.println("Unable to create trace file " + fileName);
+            throw new IOException();
+        }
+
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, FORMAT_VERSION);
+        buffer.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.putLong(RECORD_COUNT_OFFSET, 0);
+    }
+
+    /* Appends an event stamped with the current wall clock time. Safe to call from several threads at once. */
+    public void record(int sessionId, int eventType, int packetNumber, int size) {
+        long index = recordCount.getAndIncrement();
+        int offset = HEADER_SIZE + (int)(index % capacity) * RECORD_SIZE;
+
+        buffer.putLong(offset + TIMESTAMP_OFFSET, WallClock.nanoTime());
+        buffer.putInt(offset + SESSION_ID_OFFSET, sessionId);
+        buffer.putInt(offset + EVENT_TYPE_OFFSET, eventType);
+        buffer.putInt(offset + PACKET_NUMBER_OFFSET, packetNumber);
+        buffer.putInt(offset + SIZE_OFFSET, size);
+
+        //once every claimed record is complete the count can cover them all, which a concurrent claim only postpones
+        long completed = completedCount.incrementAndGet();
+        if (completed == recordCount.get()) {
+            publishRecordCount(completed);
+        }
+    }
+
+    /* Raises the count in the header to the given value, unless another writer has already published a higher one */
+    private void publishRecordCount(long count) {
+        long published = (long)RECORD_COUNT.getVolatile(buffer, RECORD_COUNT_OFFSET);
+        while (published < count && !RECORD_COUNT.compareAndSet(buffer, RECORD_COUNT_OFFSET, published, count)) {
+            published = (long)RECORD_COUNT.getVolatile(buffer, RECORD_COUNT_OFFSET);
+        }
+    }
+
+    /* Flushes the records written so far to the file */
+    public void close() {
+        publishRecordCount(completedCount.get());
+        buffer.force();
+    }
+
+    public static String getEventName(int eventType) {
+        return eventType > 0 && eventType < EVENT_NAMES.length ? EVENT_NAMES[eventType] : "Unknown (" + eventType + ")";
+    }
+}
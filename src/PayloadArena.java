@@ -0,0 +1,90 @@
+import java.io.IOException;
+import java.util.Random;
+
+/* Holds the bytes that tests send as their messages. The arena is filled once at startup, so no test allocates or fills
+ * a message between or during its measurements. Tests send read-only slices of it; nothing may write to them.
+ *
+ * The content can be random, all zero, or compressible: bytes drawn at random from 16 letters, which carry 4 bits of
+ * entropy each and so compress to about half their size. Successive slices start at different offsets, so a path that
+ * deduplicates or caches repeated payloads does not see the same message over and over.
+ *
+ * The arena is a heap array rather than a direct buffer because every host sends from a byte[]: socket streams,
+ * DatagramPacket and the loopback ring buffers all take arrays, so bytes in a direct buffer would have to be copied back
+ * onto the heap before each send. Allocated once, the array is promoted to the old generation and never collected.
+ */
+public class PayloadArena {
+
+    public static final int DEFAULT_CAPACITY = 4 * 1024 * 1024;
+    public static final String RANDOM_CONTENT = "random";
+    public static final String ZERO_CONTENT = "zero";
+    public static final String COMPRESSIBLE_CONTENT = "compressible";
+    public static final String[] CONTENTS = {RANDOM_CONTENT, ZERO_CONTENT, COMPRESSIBLE_CONTENT};
+
+    static final int COMPRESSIBLE_ALPHABET_SIZE = 16;
+
+    //a prime, so that slice offsets cycle through the arena rather than repeating a few positions
+    static final int SLICE_STRIDE = 4099;
+
+    static PayloadArena defaultArena;
+
+    byte[] payload;
+    String content;
+    int nextOffset;
+
+    public PayloadArena(int capacity, String content) {
+        this.payload = new byte[capacity];
+        this.content = content;
+
+        Random rand = new Random();
+        if (content.equals(RANDOM_CONTENT)) {
+            rand.nextBytes(payload);
+        }
+        else if (content.equals(COMPRESSIBLE_CONTENT)) {
+            for (int i = 0; i < capacity; i++) {
+                payload[i] = (byte)('a' + rand.nextInt(COMPRESSIBLE_ALPHABET_SIZE));
+            }
+        }
+        else if (!content.equals(ZERO_CONTENT)) {
+            throw new IllegalArgumentException("Unknown payload content: " + content);
+        }
+    }
+
+    /* Returns the arena that new hosts send from, creating one of random content on first use */
+    public static synchronized PayloadArena getDefault() {
+        if (defaultArena == null) {
+            defaultArena = new PayloadArena(DEFAULT_CAPACITY, RANDOM_CONTENT);
+        }
+        return defaultArena;
+    }
+
+    /* Sets the arena that hosts created from now on send from */
+    public static synchronized void setDefault(PayloadArena arena) {
+        defaultArena = arena;
+    }
+
+    /* Returns the offset in getArray() of length bytes that a test may send. Hosts on different threads may share an
+     * arena; a race on the next offset only changes which bytes are sent.
+     */
+    public int slice(int length) throws IOException {
+        if (length > payload.length) {
+            System.out.println("Messages larger than the payload arena (" + payload.length + " bytes) are not supported");
+            throw new IOException();
+        }
+
+        int offset = nextOffset % (payload.length - length + 1);
+        nextOffset = (offset + SLICE_STRIDE) % payload.length;
+        return offset;
+    }
+
+    public byte[] getArray() {
+        return payload;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public int getCapacity() {
+        return payload.length;
+    }
+}
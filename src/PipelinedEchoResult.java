@@ -0,0 +1,50 @@
+/* The outcome of a pipelined echo test: how many requests completed or were lost, how long the run took, and the
+ * latency of every completed request.
+ */
+public class PipelinedEchoResult {
+
+    int pipelineDepth;
+    int completedCount;
+    int lostCount;
+    long elapsedTime;
+    LatencyDistribution latencies;
+
+    public PipelinedEchoResult(int pipelineDepth, int completedCount, int lostCount, long elapsedTime, long[] latencies) {
+        this.pipelineDepth = pipelineDepth;
+        this.completedCount = completedCount;
+        this.lostCount = lostCount;
+        this.elapsedTime = elapsedTime;
+        this.latencies = new LatencyDistribution(latencies, completedCount);
+    }
+
+    public int getPipelineDepth() {
+        return pipelineDepth;
+    }
+
+    public int getCompletedCount() {
+        return completedCount;
+    }
+
+    public int getLostCount() {
+        return lostCount;
+    }
+
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    /* Returns the number of completed requests per second */
+    public double getOperationsPerSecond() {
+        return elapsedTime == 0 ? 0 : completedCount * 1000000000.0 / elapsedTime;
+    }
+
+    /* Returns the fraction of the requests sent that were lost */
+    public double getLossRate() {
+        int sentCount = completedCount + lostCount;
+        return sentCount == 0 ? 0 : (lostCount * 1.0) / sentCount;
+    }
+
+    public LatencyDistribution getLatencies() {
+        return latencies;
+    }
+}
@@ -0,0 +1,181 @@
+import java.nio.ByteBuffer;
+
+/* Accumulates the receiver-side metrics of a UDP probe stream: loss, reordering, duplicates and the RFC 3550
+ * interarrival jitter estimate. Each probe carries its sequence number and the sender's timestamp, so the jitter
+ * only depends on differences between transit times and is unaffected by any offset between the two clocks.
+ */
+public class ProbeStreamStatistics {
+
+    public static final int SERIALIZED_SIZE = (Long.SIZE / Byte.SIZE) * 10;
+
+    //sessions on protocol version 1 exchange the statistics without the goodput fields
+    public static final int V1_SERIALIZED_SIZE = (Long.SIZE / Byte.SIZE) * 7;
+
+    /* RFC 3550 section 6.4.1 smooths the jitter with a gain parameter of 1/16 */
+    static final int JITTER_GAIN_SHIFT = 4;
+
+    int expectedCount;
+    long receivedCount;
+    long duplicateCount;
+    long reorderedCount;
+    long maxReorderDepth;
+    long highestSequenceNumber;
+    double jitter;
+    long receivedByteCount;
+    long firstArrivalTime;
+    long lastArrivalTime;
+
+    boolean[] seen;
+    long previousTransitTime;
+    boolean hasPreviousTransitTime;
+
+    //only meaningful when both timestamps come from the same clock, and not carried by toByteArray
+    long minTransitTime;
+    long maxTransitTime;
+    double transitTimeSum;
+
+    public ProbeStreamStatistics(int expectedCount) {
+        this.expectedCount = expectedCount;
+        this.seen = new boolean[expectedCount];
+        this.highestSequenceNumber = -1;
+        this.hasPreviousTransitTime = false;
+        this.minTransitTime = Long.MAX_VALUE;
+        this.maxTransitTime = Long.MIN_VALUE;
+    }
+
+    private ProbeStreamStatistics() {
+    }
+
+    /* Records the arrival of a probe of the given size. Both timestamps are in nanoseconds; they may come from different
+     * clocks.
+     */
+    public void recordArrival(int sequenceNumber, long sendTime, long arrivalTime, int size) {
+        if (sequenceNumber < 0 || sequenceNumber >= expectedCount) {
+            return;
+        }
+
+        if (seen[sequenceNumber]) {
+            duplicateCount++;
+            return;
+        }
+        seen[sequenceNumber] = true;
+        receivedCount++;
+        receivedByteCount += size;
+        if (receivedCount == 1) {
+            firstArrivalTime = arrivalTime;
+        }
+        lastArrivalTime = arrivalTime;
+
+        if (sequenceNumber < highestSequenceNumber) {
+            reorderedCount++;
+            maxReorderDepth = Math.max(maxReorderDepth, highestSequenceNumber - sequenceNumber);
+        }
+        else {
+            highestSequenceNumber = sequenceNumber;
+        }
+
+        long transitTime = arrivalTime - sendTime;
+        minTransitTime = Math.min(minTransitTime, transitTime);
+        maxTransitTime = Math.max(maxTransitTime, transitTime);
+        transitTimeSum += transitTime;
+
+        //J(i) = J(i-1) + (|D(i-1,i)| - J(i-1))/16, where D is the difference in relative transit times
+        if (hasPreviousTransitTime) {
+            long transitTimeDifference = Math.abs(transitTime - previousTransitTime);
+            jitter += (transitTimeDifference - jitter) / (1 << JITTER_GAIN_SHIFT);
+        }
+        previousTransitTime = transitTime;
+        hasPreviousTransitTime = true;
+    }
+
+    public int getExpectedCount() {
+        return expectedCount;
+    }
+
+    public long getReceivedCount() {
+        return receivedCount;
+    }
+
+    public long getLostCount() {
+        return expectedCount - receivedCount;
+    }
+
+    public double getLossRate() {
+        return expectedCount == 0 ? 0 : (getLostCount() * 1.0) / expectedCount;
+    }
+
+    public long getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    public long getReorderedCount() {
+        return reorderedCount;
+    }
+
+    public long getMaxReorderDepth() {
+        return maxReorderDepth;
+    }
+
+    /* Returns the interarrival jitter in nanoseconds */
+    public long getJitter() {
+        return (long)jitter;
+    }
+
+    public long getReceivedByteCount() {
+        return receivedByteCount;
+    }
+
+    /* Returns the bits per second of distinct probes delivered, from the first probe's arrival to the last's */
+    public double getGoodput() {
+        long receiveTime = lastArrivalTime - firstArrivalTime;
+        return receiveTime <= 0 ? 0 : receivedByteCount * 8.0 * 1e9 / receiveTime;
+    }
+
+    /* Returns the mean transit time in nanoseconds. This is the one-way latency only if the sender's and receiver's
+     * timestamps come from the same clock, as they do when both run in one process.
+     */
+    public long getMeanTransitTime() {
+        return receivedCount == 0 ? 0 : (long)(transitTimeSum / receivedCount);
+    }
+
+    public long getMaxTransitTime() {
+        return receivedCount == 0 ? 0 : maxTransitTime;
+    }
+
+    public long getMinTransitTime() {
+        return receivedCount == 0 ? 0 : minTransitTime;
+    }
+
+    public byte[] toByteArray() {
+        ByteBuffer buffer = ByteBuffer.allocate(SERIALIZED_SIZE);
+        buffer.putLong(expectedCount);
+        buffer.putLong(receivedCount);
+        buffer.putLong(duplicateCount);
+        buffer.putLong(reorderedCount);
+        buffer.putLong(maxReorderDepth);
+        buffer.putLong(highestSequenceNumber);
+        buffer.putLong(Double.doubleToLongBits(jitter));
+        buffer.putLong(receivedByteCount);
+        buffer.putLong(firstArrivalTime);
+        buffer.putLong(lastArrivalTime);
+        return buffer.array();
+    }
+
+    public static ProbeStreamStatistics fromByteArray(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        ProbeStreamStatistics statistics = new ProbeStreamStatistics();
+        statistics.expectedCount = (int)buffer.getLong();
+        statistics.receivedCount = buffer.getLong();
+        statistics.duplicateCount = buffer.getLong();
+        statistics.reorderedCount = buffer.getLong();
+        statistics.maxReorderDepth = buffer.getLong();
+        statistics.highestSequenceNumber = buffer.getLong();
+        statistics.jitter = Double.longBitsToDouble(buffer.getLong());
+        if (buffer.remaining() >= SERIALIZED_SIZE - V1_SERIALIZED_SIZE) {
+            statistics.receivedByteCount = buffer.getLong();
+            statistics.firstArrivalTime = buffer.getLong();
+            statistics.lastArrivalTime = buffer.getLong();
+        }
+        return statistics;
+    }
+}
@@ -0,0 +1,83 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/* Accumulates the CPU time and heap allocation of the current thread over one or more measured sections, so that the
+ * cost of a test on the host can be reported next to its latency and throughput. Allocation is only available on JVMs
+ * that provide com.sun.management.ThreadMXBean and is reported as zero elsewhere.
+ */
+public class ResourceUsage {
+
+    static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    static final boolean CPU_TIME_SUPPORTED = THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported();
+    static final boolean ALLOCATION_SUPPORTED = THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean)THREAD_MX_BEAN).isThreadAllocatedMemorySupported();
+
+    long cpuTime;
+    long allocatedBytes;
+    long operationCount;
+
+    long startCpuTime;
+    long startAllocatedBytes;
+
+    public ResourceUsage() {
+        if (CPU_TIME_SUPPORTED && !THREAD_MX_BEAN.isThreadCpuTimeEnabled()) {
+            THREAD_MX_BEAN.setThreadCpuTimeEnabled(true);
+        }
+    }
+
+    /* Marks the start of a measured section on the current thread */
+    public void start() {
+        this.startAllocatedBytes = currentThreadAllocatedBytes();
+        this.startCpuTime = currentThreadCpuTime();
+    }
+
+    /* Adds the usage since the matching start() to the totals and counts one operation */
+    public void stop() {
+        long endCpuTime = currentThreadCpuTime();
+        long endAllocatedBytes = currentThreadAllocatedBytes();
+        this.cpuTime += endCpuTime - startCpuTime;
+        this.allocatedBytes += endAllocatedBytes - startAllocatedBytes;
+        this.operationCount++;
+    }
+
+    public void add(long cpuTime, long allocatedBytes, long operationCount) {
+        this.cpuTime += cpuTime;
+        this.allocatedBytes += allocatedBytes;
+        this.operationCount += operationCount;
+    }
+
+    public void reset() {
+        this.cpuTime = 0;
+        this.allocatedBytes = 0;
+        this.operationCount = 0;
+    }
+
+    /* Returns the CPU time in nanoseconds */
+    public long getCpuTime() {
+        return cpuTime;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public long getOperationCount() {
+        return operationCount;
+    }
+
+    public double getCpuTimePerByte(long byteCount) {
+        return byteCount == 0 ? 0 : (cpuTime * 1.0) / byteCount;
+    }
+
+    public double getAllocatedBytesPerOperation() {
+        return operationCount == 0 ? 0 : (allocatedBytes * 1.0) / operationCount;
+    }
+
+    private static long currentThreadCpuTime() {
+        return CPU_TIME_SUPPORTED ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0;
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        return ALLOCATION_SUPPORTED ? ((com.sun.management.ThreadMXBean)THREAD_MX_BEAN).getCurrentThreadAllocatedBytes() : 0;
+    }
+}
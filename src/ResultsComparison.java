@@ -0,0 +1,420 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Random;
+
+/* Compares two results files written by NetworkAnalysisClient and reports, for every column of per-case samples that
+ * both contain, whether the current run regressed or improved on the baseline. Per-case samples are the rows numbered
+ * 1, 2, 3... under a "Test Case" or size class header, as written by the round trip, one-way delay, throughput,
+ * full-duplex, probe stream and packet transfer suites. Every such column holds a time, a count or a loss rate, so
+ * lower is better throughout.
+ *
+ * A column's median regressed when a two-sided Mann-Whitney U test rejects equal distributions at the given alpha and
+ * the median grew by more than the threshold percentage. Its 99th percentile regressed when the whole bootstrap
+ * confidence interval of its change, at confidence 1 - alpha, lies above the threshold. Improvements are the mirror
+ * image. The effect size is Cliff's delta: the probability that a current sample is larger than a baseline sample less
+ * the probability that it is smaller.
+ *
+ * The comparison is printed as CSV. The exit status is 1 if anything regressed and 2 if the files could not be compared.
+ */
+public class ResultsComparison {
+
+    static final double DEFAULT_ALPHA = 0.01;
+    static final double DEFAULT_THRESHOLD = 5;
+    static final int MIN_SAMPLES = 5;
+    static final int BOOTSTRAP_RESAMPLES = 2000;
+
+    //a fixed seed, so that comparing the same two files always gives the same intervals
+    static final long BOOTSTRAP_SEED = 2691;
+
+    static final int EXIT_REGRESSION = 1;
+    static final int EXIT_ERROR = 2;
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            printUsage();
+            System.exit(EXIT_ERROR);
+        }
+
+        double alpha = DEFAULT_ALPHA;
+        double threshold = DEFAULT_THRESHOLD;
+        for (int i = 2; i < args.length; i++) {
+            try {
+                if (args[i].startsWith("--alpha=")) {
+                    alpha = Double.parseDouble(args[i].substring("--alpha=".length()));
+                }
+                else if (args[i].startsWith("--threshold=")) {
+                    threshold = Double.parseDouble(args[i].substring("--threshold=".length()));
+                }
+                else {
+                    System.out.println("Unknown option: " + args[i]);
+                    System.exit(EXIT_ERROR);
+                }
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid number in option: " + args[i]);
+                printUsage();
+                System.exit(EXIT_ERROR);
+            }
+        }
+        if (!(alpha > 0 && alpha < 1) || !(threshold >= 0)) {
+            System.out.println("The alpha must be between 0 and 1 and the threshold at least 0");
+            printUsage();
+            System.exit(EXIT_ERROR);
+        }
+
+        LinkedHashMap<String, SampleColumn> baseline;
+        LinkedHashMap<String, SampleColumn> current;
+        try {
+            baseline = readSamples(args[0]);
+            current = readSamples(args[1]);
+        } catch (IOException e) {
+            System.exit(EXIT_ERROR);
+            return;
+        }
+
+        System.out.println("Comparison of " + args[1] + " Against Baseline " + args[0]);
+        System.out.println("Alpha," + alpha);
+        System.out.println("Threshold (%)," + threshold);
+        System.out.println("Test,Column,Baseline Samples,Current Samples,Baseline Median,Current Median,Median Change (%),"
+                + "Median Change CI Low (%),Median Change CI High (%),Baseline p99,Current p99,p99 Change (%),"
+                + "p99 Change CI Low (%),p99 Change CI High (%),Mann-Whitney p,Cliff's Delta,Effect Size,Verdict");
+
+        Random random = new Random(BOOTSTRAP_SEED);
+        int comparedCount = 0;
+        int regressionCount = 0;
+        int improvementCount = 0;
+        for (String key : baseline.keySet()) {
+            SampleColumn currentColumn = current.get(key);
+            if (currentColumn == null) {
+                continue;
+            }
+            ColumnComparison comparison = new ColumnComparison(baseline.get(key), currentColumn, alpha, threshold, random);
+            comparison.print();
+            comparedCount++;
+            if (comparison.isRegression()) {
+                regressionCount++;
+            }
+            else if (comparison.isImprovement()) {
+                improvementCount++;
+            }
+        }
+        System.out.println();
+
+        System.out.println("Columns Compared," + comparedCount);
+        System.out.println("Regressions," + regressionCount);
+        System.out.println("Improvements," + improvementCount);
+        printUnmatched("Only in Baseline", baseline, current);
+        printUnmatched("Only in Current", current, baseline);
+
+        if (comparedCount == 0) {
+            System.out.println("The results files have no test columns in common");
+            System.exit(EXIT_ERROR);
+        }
+        System.exit(regressionCount > 0 ? EXIT_REGRESSION : 0);
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: ResultsComparison <baseline results file> <current results file> [--alpha=<p>] [--threshold=<percent>]");
+    }
+
+    private static void printUnmatched(String label, LinkedHashMap<String, SampleColumn> columns, LinkedHashMap<String, SampleColumn> others) {
+        for (String key : columns.keySet()) {
+            if (!others.containsKey(key)) {
+                SampleColumn column = columns.get(key);
+                System.out.println(label + "," + column.test + "," + column.name);
+            }
+        }
+    }
+
+    /* Reads every column of per-case samples in a results file, keyed by its test title and column name */
+    static LinkedHashMap<String, SampleColumn> readSamples(String fileName) throws IOException {
+        LinkedHashMap<String, SampleColumn> columns = new LinkedHashMap<String, SampleColumn>();
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+            String title = null;
+            String[] classLabels = new String[0];
+            String[] columnNames = new String[0];
+            boolean hasHeader = false;
+            int nextCase = 1;
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] cells = line.split(",", -1);
+
+                //each test's table ends with a blank line
+                if (line.trim().isEmpty()) {
+                    title = null;
+                    classLabels = new String[0];
+                    columnNames = new String[0];
+                    hasHeader = false;
+                    nextCase = 1;
+                }
+                else if (cells[0].isEmpty()) {
+                    classLabels = cells;
+                    hasHeader = true;
+                }
+                else if (cells[0].equals("Test Case")) {
+                    columnNames = cells;
+                    hasHeader = true;
+                }
+                else if (hasHeader && title != null && cells[0].equals(Integer.toString(nextCase))) {
+                    for (int i = 1; i < cells.length; i++) {
+                        if (cells[i].isEmpty()) {
+                            continue;
+                        }
+                        String name = getColumnName(classLabels, columnNames, i);
+                        SampleColumn column = columns.computeIfAbsent(title + "\n" + name, key -> new SampleColumn());
+                        column.test = title;
+                        column.name = name;
+                        column.samples.add(Double.parseDouble(cells[i]));
+                    }
+                    nextCase++;
+                }
+                else if (cells.length == 1 && nextCase == 1) {
+
+                    //the last single-cell line before the samples names the test, which skips notes printed ahead of it
+                    title = line.trim();
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.out.println("Unable to read results file " + fileName);
+            throw new IOException();
+        }
+
+        return columns;
+    }
+
+    private static String getColumnName(String[] classLabels, String[] columnNames, int index) {
+        String classLabel = index < classLabels.length ? classLabels[index].trim() : "";
+        String columnName = index < columnNames.length ? columnNames[index].trim() : "";
+        if (classLabel.isEmpty()) {
+            return columnName;
+        }
+        return columnName.isEmpty() ? classLabel : classLabel + " " + columnName;
+    }
+
+    /* Returns the value at the given percentile (0 to 100) of sorted values using the nearest-rank method */
+    static double getPercentile(double[] sortedValues, double percentile) {
+        int rank = (int)Math.ceil((percentile / 100) * sortedValues.length);
+        return sortedValues[Math.min(Math.max(rank, 1), sortedValues.length) - 1];
+    }
+
+    /* Returns the change from before to after as a percentage of before */
+    static double getChange(double before, double after) {
+        return before == after ? 0 : (after - before) / Math.abs(before) * 100;
+    }
+
+    /* The complementary error function, with a fractional error below 1.2e-7 (Numerical Recipes' erfcc) */
+    static double erfc(double x) {
+        double z = Math.abs(x);
+        double t = 1 / (1 + 0.5 * z);
+        double result = t * Math.exp(-z * z - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+                + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587 + t * (-0.82215223
+                + t * 0.17087277)))))))));
+        return x >= 0 ? result : 2 - result;
+    }
+
+    static class SampleColumn {
+        String test;
+        String name;
+        ArrayList<Double> samples = new ArrayList<Double>();
+
+        double[] toSortedArray() {
+            double[] values = new double[samples.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = samples.get(i);
+            }
+            Arrays.sort(values);
+            return values;
+        }
+    }
+
+    static class ColumnComparison {
+        SampleColumn column;
+        double alpha;
+        double threshold;
+        double[] baseline;
+        double[] current;
+
+        double pValue = 1;
+        double cliffsDelta;
+        double medianChange;
+        double p99Change;
+        double[] medianChangeInterval = {0, 0};
+        double[] p99ChangeInterval = {0, 0};
+
+        ColumnComparison(SampleColumn baselineColumn, SampleColumn currentColumn, double alpha, double threshold, Random random) {
+            this.column = baselineColumn;
+            this.alpha = alpha;
+            this.threshold = threshold;
+            this.baseline = baselineColumn.toSortedArray();
+            this.current = currentColumn.toSortedArray();
+
+            this.medianChange = getChange(getPercentile(baseline, 50), getPercentile(current, 50));
+            this.p99Change = getChange(getPercentile(baseline, 99), getPercentile(current, 99));
+            if (hasEnoughSamples()) {
+                computeMannWhitney();
+                computeBootstrapIntervals(random);
+            }
+        }
+
+        boolean hasEnoughSamples() {
+            return baseline.length >= MIN_SAMPLES && current.length >= MIN_SAMPLES;
+        }
+
+        /* Ranks both samples together, giving ties their average rank, and tests the current sample's U statistic with
+         * the normal approximation, corrected for ties and continuity.
+         */
+        private void computeMannWhitney() {
+            int n1 = baseline.length;
+            int n2 = current.length;
+            int n = n1 + n2;
+
+            //merge the two sorted samples, remembering which values came from the current run
+            double[] values = new double[n];
+            boolean[] fromCurrent = new boolean[n];
+            for (int i = 0, j = 0, k = 0; k < n; k++) {
+                if (j >= n2 || (i < n1 && baseline[i] <= current[j])) {
+                    values[k] = baseline[i++];
+                }
+                else {
+                    values[k] = current[j++];
+                    fromCurrent[k] = true;
+                }
+            }
+
+            double currentRankSum = 0;
+            double tieCorrection = 0;
+            for (int start = 0; start < n; ) {
+                int end = start;
+                while (end + 1 < n && values[end + 1] == values[start]) {
+                    end++;
+                }
+                double averageRank = (start + end) / 2.0 + 1;
+                for (int k = start; k <= end; k++) {
+                    if (fromCurrent[k]) {
+                        currentRankSum += averageRank;
+                    }
+                }
+                double tieCount = end - start + 1;
+                tieCorrection += tieCount * tieCount * tieCount - tieCount;
+                start = end + 1;
+            }
+
+            double u = currentRankSum - n2 * (n2 + 1) / 2.0;
+            double pairCount = (double)n1 * n2;
+            this.cliffsDelta = 2 * u / pairCount - 1;
+
+            double mean = pairCount / 2;
+            double variance = pairCount / 12 * ((n + 1) - tieCorrection / ((double)n * (n - 1)));
+            if (variance <= 0) {
+                this.pValue = 1;
+                return;
+            }
+            double z = Math.max(0, Math.abs(u - mean) - 0.5) / Math.sqrt(variance);
+            this.pValue = erfc(z / Math.sqrt(2));
+        }
+
+        /* Resamples both runs with replacement and takes the alpha / 2 and 1 - alpha / 2 percentiles of the resulting
+         * changes in median and 99th percentile.
+         */
+        private void computeBootstrapIntervals(Random random) {
+            double[] medianChanges = new double[BOOTSTRAP_RESAMPLES];
+            double[] p99Changes = new double[BOOTSTRAP_RESAMPLES];
+            double[] baselineResample = new double[baseline.length];
+            double[] currentResample = new double[current.length];
+
+            for (int b = 0; b < BOOTSTRAP_RESAMPLES; b++) {
+                resample(baseline, baselineResample, random);
+                resample(current, currentResample, random);
+                medianChanges[b] = getChange(getPercentile(baselineResample, 50), getPercentile(currentResample, 50));
+                p99Changes[b] = getChange(getPercentile(baselineResample, 99), getPercentile(currentResample, 99));
+            }
+
+            this.medianChangeInterval = getInterval(medianChanges);
+            this.p99ChangeInterval = getInterval(p99Changes);
+        }
+
+        private static void resample(double[] values, double[] resample, Random random) {
+            for (int i = 0; i < resample.length; i++) {
+                resample[i] = values[random.nextInt(values.length)];
+            }
+            Arrays.sort(resample);
+        }
+
+        private double[] getInterval(double[] changes) {
+            Arrays.sort(changes);
+            return new double[]{getPercentile(changes, alpha / 2 * 100), getPercentile(changes, (1 - alpha / 2) * 100)};
+        }
+
+        boolean isMedianRegression() {
+            return hasEnoughSamples() && pValue < alpha && cliffsDelta > 0 && medianChange > threshold;
+        }
+
+        boolean isMedianImprovement() {
+            return hasEnoughSamples() && pValue < alpha && cliffsDelta < 0 && medianChange < -threshold;
+        }
+
+        boolean isTailRegression() {
+            return hasEnoughSamples() && p99ChangeInterval[0] > threshold;
+        }
+
+        boolean isTailImprovement() {
+            return hasEnoughSamples() && p99ChangeInterval[1] < -threshold;
+        }
+
+        boolean isRegression() {
+            return isMedianRegression() || isTailRegression();
+        }
+
+        boolean isImprovement() {
+            return !isRegression() && (isMedianImprovement() || isTailImprovement());
+        }
+
+        String getVerdict() {
+            if (!hasEnoughSamples()) {
+                return "Insufficient Samples";
+            }
+            if (isMedianRegression()) {
+                return "Regression";
+            }
+            if (isTailRegression()) {
+                return "Tail Regression";
+            }
+            if (isMedianImprovement()) {
+                return "Improvement";
+            }
+            if (isTailImprovement()) {
+                return "Tail Improvement";
+            }
+            return "No Change";
+        }
+
+        /* Names the magnitude of Cliff's delta using the thresholds of Romano et al. (2006) */
+        String getEffectSize() {
+            double magnitude = Math.abs(cliffsDelta);
+            if (magnitude < 0.147) {
+                return "Negligible";
+            }
+            if (magnitude < 0.33) {
+                return "Small";
+            }
+            if (magnitude < 0.474) {
+                return "Medium";
+            }
+            return "Large";
+        }
+
+        void print() {
+            System.out.println(column.test + "," + column.name + "," + baseline.length + "," + current.length + ","
+                    + getPercentile(baseline, 50) + "," + getPercentile(current, 50) + "," + medianChange + ","
+                    + medianChangeInterval[0] + "," + medianChangeInterval[1] + ","
+                    + getPercentile(baseline, 99) + "," + getPercentile(current, 99) + "," + p99Change + ","
+                    + p99ChangeInterval[0] + "," + p99ChangeInterval[1] + ","
+                    + pValue + "," + cliffsDelta + "," + getEffectSize() + "," + getVerdict());
+        }
+    }
+}
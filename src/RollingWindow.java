@@ -0,0 +1,183 @@
+import java.util.Arrays;
+
+/* Aggregates samples over a sliding window of fixed length, e.g. the last minute or hour, in constant memory. The
+ * window is split into a ring of equal buckets; a bucket is cleared and reused once its interval has slid out of the
+ * window, so memory stays bounded however long the window is fed. Each bucket keeps a log-linear histogram from which
+ * percentiles are estimated to within 1/HISTOGRAM_SUB_BINS of an octave.
+ */
+public class RollingWindow {
+
+    static final int HISTOGRAM_SUB_BIN_BITS = 3;
+    static final int HISTOGRAM_SUB_BINS = 1 << HISTOGRAM_SUB_BIN_BITS;
+    static final int HISTOGRAM_BINS = Long.SIZE * HISTOGRAM_SUB_BINS;
+
+    long bucketDuration;
+    int bucketCount;
+
+    long[] bucketIntervals;
+    long[] sampleCounts;
+    long[] failureCounts;
+    double[] sampleSums;
+    long[] minimums;
+    long[] maximums;
+    int[][] histograms;
+
+    /* Creates a window of bucketCount buckets, each covering bucketDuration milliseconds */
+    public RollingWindow(long bucketDuration, int bucketCount) {
+        this.bucketDuration = bucketDuration;
+        this.bucketCount = bucketCount;
+        this.bucketIntervals = new long[bucketCount];
+        this.sampleCounts = new long[bucketCount];
+        this.failureCounts = new long[bucketCount];
+        this.sampleSums = new double[bucketCount];
+        this.minimums = new long[bucketCount];
+        this.maximums = new long[bucketCount];
+        this.histograms = new int[bucketCount][HISTOGRAM_BINS];
+
+        for (int i = 0; i < bucketCount; i++) {
+            bucketIntervals[i] = -1;
+        }
+    }
+
+    /* Returns the length of the window in milliseconds */
+    public long getDuration() {
+        return bucketDuration * bucketCount;
+    }
+
+    /* Adds a non-negative sample taken at the given time in milliseconds */
+    public synchronized void record(long time, long value) {
+        int bucket = bucketFor(time);
+        sampleCounts[bucket]++;
+        sampleSums[bucket] += value;
+        minimums[bucket] = Math.min(minimums[bucket], value);
+        maximums[bucket] = Math.max(maximums[bucket], value);
+        histograms[bucket][binFor(value)]++;
+    }
+
+    /* Counts a probe that failed at the given time in milliseconds */
+    public synchronized void recordFailure(long time) {
+        failureCounts[bucketFor(time)]++;
+    }
+
+    /* Returns the aggregate of the buckets still inside the window at the given time in milliseconds */
+    public synchronized Summary summarize(long time) {
+        long currentInterval = time / bucketDuration;
+        Summary summary = new Summary();
+        int[] histogram = new int[HISTOGRAM_BINS];
+        summary.min = Long.MAX_VALUE;
+
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            long interval = bucketIntervals[bucket];
+            if (interval == -1 || interval <= currentInterval - bucketCount || interval > currentInterval) {
+                continue;
+            }
+            summary.count += sampleCounts[bucket];
+            summary.failureCount += failureCounts[bucket];
+            summary.mean += sampleSums[bucket];
+            if (sampleCounts[bucket] > 0) {
+                summary.min = Math.min(summary.min, minimums[bucket]);
+                summary.max = Math.max(summary.max, maximums[bucket]);
+            }
+            for (int bin = 0; bin < HISTOGRAM_BINS; bin++) {
+                histogram[bin] += histograms[bucket][bin];
+            }
+        }
+
+        if (summary.count == 0) {
+            summary.min = 0;
+            return summary;
+        }
+        summary.mean /= summary.count;
+        summary.median = Math.max(summary.min, Math.min(summary.max, percentileOf(histogram, summary.count, 50)));
+        summary.p99 = Math.max(summary.min, Math.min(summary.max, percentileOf(histogram, summary.count, 99)));
+        return summary;
+    }
+
+    /* Returns the bucket for the given time, clearing it first if it last held an interval that has left the window */
+    private int bucketFor(long time) {
+        long interval = time / bucketDuration;
+        int bucket = (int)(interval % bucketCount);
+        if (bucketIntervals[bucket] != interval) {
+            bucketIntervals[bucket] = interval;
+            sampleCounts[bucket] = 0;
+            failureCounts[bucket] = 0;
+            sampleSums[bucket] = 0;
+            minimums[bucket] = Long.MAX_VALUE;
+            maximums[bucket] = 0;
+            Arrays.fill(histograms[bucket], 0);
+        }
+        return bucket;
+    }
+
+    /* Values below HISTOGRAM_SUB_BINS get a bin each; above that every octave is split into HISTOGRAM_SUB_BINS bins */
+    static int binFor(long value) {
+        if (value < HISTOGRAM_SUB_BINS) {
+            return (int)Math.max(value, 0);
+        }
+        int octave = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBin = (int)(value >>> (octave - HISTOGRAM_SUB_BIN_BITS)) & (HISTOGRAM_SUB_BINS - 1);
+        return (octave - HISTOGRAM_SUB_BIN_BITS + 1) * HISTOGRAM_SUB_BINS + subBin;
+    }
+
+    /* Returns the midpoint of the values that fall into the given bin */
+    static long valueOf(int bin) {
+        if (bin < HISTOGRAM_SUB_BINS) {
+            return bin;
+        }
+        int octave = bin / HISTOGRAM_SUB_BINS + HISTOGRAM_SUB_BIN_BITS - 1;
+        int subBin = bin % HISTOGRAM_SUB_BINS;
+        long binWidth = 1L << (octave - HISTOGRAM_SUB_BIN_BITS);
+        return (1L << octave) + subBin * binWidth + binWidth / 2;
+    }
+
+    /* Nearest-rank percentile, as LatencyDistribution computes it, over the histogram's bins */
+    private static long percentileOf(int[] histogram, long count, double percentile) {
+        long rank = Math.max((long)Math.ceil((percentile / 100) * count), 1);
+        long seen = 0;
+        for (int bin = 0; bin < HISTOGRAM_BINS; bin++) {
+            seen += histogram[bin];
+            if (seen >= rank) {
+                return valueOf(bin);
+            }
+        }
+        return 0;
+    }
+
+    public static class Summary {
+        long count;
+        long failureCount;
+        long min;
+        long max;
+        double mean;
+        long median;
+        long p99;
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getFailureCount() {
+            return failureCount;
+        }
+
+        public long getMin() {
+            return min;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public long getMedian() {
+            return median;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.KeyStore;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+/* Builds TLS contexts from a self-signed certificate kept in a local PKCS12 keystore, so the TLS tests need no
+ * certificate authority. The server generates the keystore with the JDK's keytool the first time it runs; a client on
+ * another machine needs a copy of the same file to trust the server.
+ */
+public class SelfSignedTLSContext {
+
+    public static final String KEYSTORE_FILE = "network-analysis-keystore.p12";
+    static final char[] KEYSTORE_PASSWORD = "network-analysis".toCharArray();
+    static final String KEY_ALIAS = "network-analysis";
+
+    public static SSLContext createServerContext() throws IOException {
+        File keystoreFile = new File(KEYSTORE_FILE);
+        if (!keystoreFile.exists()) {
+            generateKeystore(keystoreFile);
+        }
+
+        try {
+            KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagerFactory.init(loadKeystore(keystoreFile), KEYSTORE_PASSWORD);
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(keyManagerFactory.getKeyManagers(), null, null);
+            return context;
+        } catch (Exception e) {
+            System.out.println("Unable to create the server TLS context");
+            throw new IOException();
+        }
+    }
+
+    /* Creates a client context that trusts only the certificate in the local keystore. Each context has its own session
+     * cache, so a fresh context always performs a full handshake.
+     */
+    public static SSLContext createClientContext() throws IOException {
+        File keystoreFile = new File(KEYSTORE_FILE);
+        if (!keystoreFile.exists()) {
+            System.out.println("Keystore " + KEYSTORE_FILE + " not found; copy it from the server");
+            throw new IOException();
+        }
+
+        try {
+            TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            trustManagerFactory.init(loadKeystore(keystoreFile));
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, trustManagerFactory.getTrustManagers(), null);
+            return context;
+        } catch (Exception e) {
+            System.out.println("Unable to create the client TLS context");
+            throw new IOException();
+        }
+    }
+
+    private static KeyStore loadKeystore(File keystoreFile) throws Exception {
+        KeyStore keystore = KeyStore.getInstance("PKCS12");
+        try (InputStream keystoreIn = new FileInputStream(keystoreFile)) {
+            keystore.load(keystoreIn, KEYSTORE_PASSWORD);
+        }
+        return keystore;
+    }
+
+    private static void generateKeystore(File keystoreFile) throws IOException {
+        String keytool = System.getProperty("java.home") + File.separator + "bin" + File.separator + "keytool";
+        String password = new String(KEYSTORE_PASSWORD);
+        ProcessBuilder builder = new ProcessBuilder(keytool, "-genkeypair",
+                "-alias", KEY_ALIAS,
+                "-keyalg", "RSA",
+                "-keysize", "2048",
+                "-validity", "3650",
+                "-dname", "CN=SimpleNetworkAnalysisTool",
+                "-ext", "SAN=dns:localhost,ip:127.0.0.1",
+                "-storetype", "PKCS12",
+                "-keystore", keystoreFile.getPath(),
+                "-storepass", password,
+                "-keypass", password);
+        builder.inheritIO();
+
+        System.out.println("Generating self-signed keystore " + keystoreFile.getPath());
+        try {
+            if (builder.start().waitFor() != 0) {
+                System.out.println("keytool failed to generate the keystore");
+                throw new IOException();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/* A lock-free byte ring buffer for exactly one writing thread and one reading thread. Each side publishes its index with
+ * an ordered store and keeps a cached copy of the other side's index, so the shared indices are only read when the
+ * cached view says the buffer is full or empty. A blocked side spins, then yields, then parks briefly.
+ */
+public class SpscByteRingBuffer {
+
+    static final int SPIN_LIMIT = 1000;
+    static final int YIELD_LIMIT = 1100;
+    static final long PARK_NANOS = 1000;
+
+    final byte[] buffer;
+    final int capacity;
+    final int mask;
+
+    final AtomicLong writeIndex = new AtomicLong();
+    final AtomicLong readIndex = new AtomicLong();
+    volatile boolean closed;
+
+    //only touched by the writing thread
+    long cachedReadIndex;
+
+    //only touched by the reading thread
+    long cachedWriteIndex;
+
+    /* Creates a ring buffer holding at least the given number of bytes, rounded up to a power of two */
+    public SpscByteRingBuffer(int minimumCapacity) {
+        int size = Integer.highestOneBit(Math.max(minimumCapacity - 1, 1)) << 1;
+        this.buffer = new byte[size];
+        this.capacity = size;
+        this.mask = size - 1;
+    }
+
+    /* Copies the bytes into the buffer, waiting for the reader to free space as often as needed */
+    public void write(byte[] data, int offset, int length) throws IOException {
+        int idleCount = 0;
+        while (length > 0) {
+            if (closed) {
+                System.out.println("Ring buffer is closed");
+                throw new IOException();
+            }
+
+            long write = writeIndex.get();
+            int free = capacity - (int)(write - cachedReadIndex);
+            if (free == 0) {
+                cachedReadIndex = readIndex.get();
+                free = capacity - (int)(write - cachedReadIndex);
+                if (free == 0) {
+                    idle(idleCount++);
+                    continue;
+                }
+            }
+
+            int index = (int)(write & mask);
+            int chunk = Math.min(length, Math.min(free, capacity - index));
+            System.arraycopy(data, offset, buffer, index, chunk);
+            writeIndex.lazySet(write + chunk);
+
+            offset += chunk;
+            length -= chunk;
+            idleCount = 0;
+        }
+    }
+
+    /* Fills the given range with bytes from the buffer. Fails with a SocketTimeoutException if no bytes arrive for
+     * timeoutMillis, or waits indefinitely if it is zero.
+     */
+    public void read(byte[] data, int offset, int length, int timeoutMillis) throws IOException {
+        int idleCount = 0;
+        long idleSince = 0;
+        while (length > 0) {
+            long read = readIndex.get();
+            int available = (int)(cachedWriteIndex - read);
+            if (available == 0) {
+                cachedWriteIndex = writeIndex.get();
+                available = (int)(cachedWriteIndex - read);
+                if (available == 0) {
+                    if (closed) {
+                        System.out.println("Ring buffer is closed");
+                        throw new IOException();
+                    }
+                    if (timeoutMillis > 0) {
+                        long now = System.nanoTime();
+                        if (idleCount == 0) {
+                            idleSince = now;
+                        }
+                        else if (now - idleSince > timeoutMillis * 1000000L) {
+                            throw new SocketTimeoutException();
+                        }
+                    }
+                    idle(idleCount++);
+                    continue;
+                }
+            }
+
+            int index = (int)(read & mask);
+            int chunk = Math.min(length, Math.min(available, capacity - index));
+            System.arraycopy(buffer, index, data, offset, chunk);
+            readIndex.lazySet(read + chunk);
+
+            offset += chunk;
+            length -= chunk;
+            idleCount = 0;
+        }
+    }
+
+    /* Wakes any waiting reader or writer, which then fails once the buffered bytes have been consumed */
+    public void close() {
+        this.closed = true;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private static void idle(int idleCount) {
+        if (idleCount < SPIN_LIMIT) {
+            Thread.onSpinWait();
+        }
+        else if (idleCount < YIELD_LIMIT) {
+            Thread.yield();
+        }
+        else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+}
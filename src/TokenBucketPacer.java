@@ -0,0 +1,77 @@
+import java.util.concurrent.locks.LockSupport;
+
+/* Paces packets to a target rate with a token bucket. Tokens accrue at the target rate up to the bucket's depth, and a
+ * packet waits until enough tokens have accrued to pay for it, so the long-run rate never exceeds the target while a
+ * sender that falls behind may catch up with a burst no larger than the bucket. The rate can be counted in packets or
+ * in bits of payload. Waits park for most of their length and spin for the rest, which keeps pacing accurate to a few
+ * microseconds rather than the tens that parking alone overshoots by.
+ */
+public class TokenBucketPacer {
+
+    static final long PACING_SPIN_THRESHOLD = 100000;
+    static final double NANOS_PER_SECOND = 1e9;
+
+    double tokensPerSecond;
+    double bucketDepth;
+    double tokensPerPacket;
+    double tokensPerByte;
+
+    double tokens;
+    long lastRefillTime;
+
+    private TokenBucketPacer(double tokensPerSecond, double bucketDepth, double tokensPerPacket, double tokensPerByte) {
+        this.tokensPerSecond = tokensPerSecond;
+        this.bucketDepth = bucketDepth;
+        this.tokensPerPacket = tokensPerPacket;
+        this.tokensPerByte = tokensPerByte;
+        this.tokens = bucketDepth;
+        this.lastRefillTime = System.nanoTime();
+    }
+
+    /* Creates a pacer that sends packetsPerSecond packets a second, with bursts of at most burstPackets */
+    public static TokenBucketPacer packetsPerSecond(double packetsPerSecond, int burstPackets) {
+        return new TokenBucketPacer(packetsPerSecond, burstPackets, 1, 0);
+    }
+
+    /* Creates a pacer that sends bitsPerSecond bits of payload a second, with bursts of at most burstBytes */
+    public static TokenBucketPacer bitsPerSecond(double bitsPerSecond, int burstBytes) {
+        return new TokenBucketPacer(bitsPerSecond, burstBytes * 8.0, 0, 8);
+    }
+
+    /* Waits until a packet with the given payload size may be sent and takes its tokens from the bucket */
+    public void acquire(int packetSize) {
+        double cost = tokensPerPacket + tokensPerByte * packetSize;
+
+        //a packet larger than the bucket may still be sent once it has accrued its own cost
+        double capacity = Math.max(bucketDepth, cost);
+        refill(System.nanoTime(), capacity);
+        if (tokens < cost) {
+            long deadline = lastRefillTime + (long)Math.ceil((cost - tokens) * NANOS_PER_SECOND / tokensPerSecond);
+            waitUntil(deadline);
+            refill(System.nanoTime(), capacity);
+        }
+        tokens -= cost;
+    }
+
+    private void refill(long now, double capacity) {
+        tokens = Math.min(capacity, tokens + (now - lastRefillTime) * tokensPerSecond / NANOS_PER_SECOND);
+        lastRefillTime = now;
+    }
+
+    public double getRate() {
+        return tokensPerSecond;
+    }
+
+    /* Parks for most of the remaining time and spins for the rest, since parking alone overshoots by tens of microseconds */
+    static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > PACING_SPIN_THRESHOLD) {
+                LockSupport.parkNanos(remaining - PACING_SPIN_THRESHOLD);
+            }
+            else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
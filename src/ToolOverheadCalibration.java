@@ -0,0 +1,90 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/* Measures the intrinsic cost of the tool by running the echo and throughput tests between two in-process
+ * LoopbackHosts. The median of each size class is kept as that class's overhead, which can be reported alongside
+ * network results or subtracted from them.
+ */
+public class ToolOverheadCalibration {
+
+    static final int WARMUP_CASES = 20;
+
+    HashMap<Integer, Long> echoOverhead;
+    HashMap<Integer, Long> clientToServerOverhead;
+    HashMap<Integer, Long> serverToClientOverhead;
+
+    public ToolOverheadCalibration() {
+        this.echoOverhead = new HashMap<Integer, Long>();
+        this.clientToServerOverhead = new HashMap<Integer, Long>();
+        this.serverToClientOverhead = new HashMap<Integer, Long>();
+    }
+
+    /* Runs every size class numOfCases times over a loopback pair and records the median of each */
+    public void calibrate(ArrayList<Integer> echoSizeClasses, ArrayList<Integer> throughputSizeClasses, int numOfCases) throws IOException {
+        LoopbackHost server = new LoopbackHost();
+        LoopbackHost client = new LoopbackHost();
+        client.connectToRemoteHost(server);
+
+        Thread serverThread = new Thread(() -> {
+            try {
+                server.startServer();
+            } catch (IOException e) {
+                System.out.println("An IOException occurred on the loopback server");
+            }
+        });
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        try {
+            client.negotiateProtocolVersion();
+            for (Integer msgSize : echoSizeClasses) {
+                long[] results = new long[numOfCases];
+                for (int i = 0; i < WARMUP_CASES + numOfCases; i++) {
+                    long result = client.echoTest(msgSize);
+                    if (i >= WARMUP_CASES) {
+                        results[i - WARMUP_CASES] = result;
+                    }
+                }
+                echoOverhead.put(msgSize, median(results));
+            }
+
+            for (Integer msgSize : throughputSizeClasses) {
+                long[] clientToServerResults = new long[numOfCases];
+                long[] serverToClientResults = new long[numOfCases];
+                for (int i = 0; i < WARMUP_CASES + numOfCases; i++) {
+                    ArrayList<Long> results = client.throughputTest(msgSize);
+                    if (i >= WARMUP_CASES) {
+                        clientToServerResults[i - WARMUP_CASES] = results.get(0);
+                        serverToClientResults[i - WARMUP_CASES] = results.get(1);
+                    }
+                }
+                clientToServerOverhead.put(msgSize, median(clientToServerResults));
+                serverToClientOverhead.put(msgSize, median(serverToClientResults));
+            }
+            client.disconnectFromRemoteHost();
+        } catch (Exception e) {
+            System.out.println("Tool Overhead Calibration Failed");
+            throw new IOException();
+        }
+    }
+
+    private static long median(long[] results) {
+        long[] sorted = results.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    public long getEchoOverhead(int msgSize) {
+        return echoOverhead.getOrDefault(msgSize, 0L);
+    }
+
+    public long getClientToServerOverhead(int msgSize) {
+        return clientToServerOverhead.getOrDefault(msgSize, 0L);
+    }
+
+    public long getServerToClientOverhead(int msgSize) {
+        return serverToClientOverhead.getOrDefault(msgSize, 0L);
+    }
+}
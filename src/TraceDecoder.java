@@ -0,0 +1,289 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+/* Rebuilds the timeline of a trace written by PacketTracer and prints it as CSV. For every large UDP message it reports
+ * the goodput, the number of retransmission rounds and retransmitted packets, the retransmit delay and the longest gap
+ * between packets. On the sending side the retransmit delay is the time from a packet's first transmission to its
+ * retransmission; on the receiving side it is the time from a NACK to the arrival of a packet it requested. Each session
+ * is summarized as well, which covers TCP streams where reads rather than packets are traced.
+ */
+public class TraceDecoder {
+
+    static final long DEFAULT_GAP_THRESHOLD = 1000000;
+    static final double NANOS_PER_SECOND = 1e9;
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            printUsage();
+            return;
+        }
+
+        boolean printTimeline = false;
+        long gapThreshold = DEFAULT_GAP_THRESHOLD;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--timeline")) {
+                printTimeline = true;
+            }
+            else if (args[i].startsWith("--gap-threshold=")) {
+                try {
+                    gapThreshold = Long.parseLong(args[i].substring("--gap-threshold=".length())) * 1000;
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid number in option: " + args[i]);
+                    printUsage();
+                    return;
+                }
+            }
+            else {
+                System.out.println("Unknown option: " + args[i]);
+                return;
+            }
+        }
+
+        ArrayList<TraceRecord> records;
+        try {
+            records = readTrace(args[0]);
+        } catch (IOException e) {
+            System.out.println("Unable to read trace file " + args[0]);
+            return;
+        }
+
+        if (records.isEmpty()) {
+            System.out.println("Trace is empty");
+            return;
+        }
+        long traceStart = records.get(0).timestamp;
+
+        if (printTimeline) {
+            printTimeline(records, traceStart);
+        }
+
+        LinkedHashMap<Integer, ArrayList<TraceRecord>> sessions = new LinkedHashMap<Integer, ArrayList<TraceRecord>>();
+        for (TraceRecord record : records) {
+            sessions.computeIfAbsent(record.sessionId, id -> new ArrayList<TraceRecord>()).add(record);
+        }
+
+        printMessages(sessions, traceStart, gapThreshold);
+        printSessions(sessions, gapThreshold);
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: TraceDecoder <trace file> [--timeline] [--gap-threshold=<microseconds>]");
+    }
+
+    /* Reads the records still held in the ring, in timestamp order */
+    static ArrayList<TraceRecord> readTrace(String fileName) throws IOException {
+        ArrayList<TraceRecord> records = new ArrayList<TraceRecord>();
+
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r"); FileChannel channel = file.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != PacketTracer.MAGIC || buffer.getInt(PacketTracer.RECORD_SIZE_OFFSET) != PacketTracer.RECORD_SIZE) {
+                System.out.println(fileName + " is not a packet trace");
+                throw new IOException();
+            }
+
+            int capacity = buffer.getInt(PacketTracer.CAPACITY_OFFSET);
+            long recordCount = buffer.getLong(PacketTracer.RECORD_COUNT_OFFSET);
+            long firstIndex = Math.max(0, recordCount - capacity);
+            for (long index = firstIndex; index < recordCount; index++) {
+                int offset = PacketTracer.HEADER_SIZE + (int)(index % capacity) * PacketTracer.RECORD_SIZE;
+                TraceRecord record = new TraceRecord();
+                record.timestamp = buffer.getLong(offset + PacketTracer.TIMESTAMP_OFFSET);
+                record.sessionId = buffer.getInt(offset + PacketTracer.SESSION_ID_OFFSET);
+                record.eventType = buffer.getInt(offset + PacketTracer.EVENT_TYPE_OFFSET);
+                record.packetNumber = buffer.getInt(offset + PacketTracer.PACKET_NUMBER_OFFSET);
+                record.size = buffer.getInt(offset + PacketTracer.SIZE_OFFSET);
+                records.add(record);
+            }
+        }
+
+        records.sort(Comparator.comparingLong(record -> record.timestamp));
+        return records;
+    }
+
+    static void printTimeline(ArrayList<TraceRecord> records, long traceStart) {
+        System.out.println("Timeline");
+        System.out.println("Time (ns),Session,Event,Packet Number,Size");
+        for (TraceRecord record : records) {
+            System.out.println((record.timestamp - traceStart) + "," + record.sessionId + ","
+                    + PacketTracer.getEventName(record.eventType) + "," + record.packetNumber + "," + record.size);
+        }
+        System.out.println();
+    }
+
+    static void printMessages(LinkedHashMap<Integer, ArrayList<TraceRecord>> sessions, long traceStart, long gapThreshold) {
+        System.out.println("Messages");
+        System.out.println("Session,Direction,Start (ns),Duration (ns),Bytes,Packets,Rounds,Retransmitted Packets,"
+                + "Duplicate Packets,Recovered Packets,Goodput (Mbit/s),Mean Retransmit Delay (ns),Max Retransmit Delay (ns),Max Gap (ns),Gaps Over Threshold");
+
+        for (ArrayList<TraceRecord> sessionRecords : sessions.values()) {
+            MessageTimeline message = null;
+            for (TraceRecord record : sessionRecords) {
+                if (record.eventType == PacketTracer.MESSAGE_SEND_START || record.eventType == PacketTracer.MESSAGE_RECEIVE_START) {
+                    message = new MessageTimeline(record, gapThreshold);
+                }
+                else if (message != null) {
+                    message.add(record);
+                    if (record.eventType == PacketTracer.MESSAGE_COMPLETE) {
+                        message.print(traceStart);
+                        message = null;
+                    }
+                }
+            }
+        }
+        System.out.println();
+    }
+
+    static void printSessions(LinkedHashMap<Integer, ArrayList<TraceRecord>> sessions, long gapThreshold) {
+        System.out.println("Sessions");
+        System.out.println("Session,Events,Bytes Sent,Bytes Received,Duration (ns),Max Gap (ns),Gaps Over Threshold");
+
+        for (Integer sessionId : sessions.keySet()) {
+            ArrayList<TraceRecord> sessionRecords = sessions.get(sessionId);
+            long bytesSent = 0;
+            long bytesReceived = 0;
+            GapTracker gaps = new GapTracker(gapThreshold);
+            for (TraceRecord record : sessionRecords) {
+                if (record.eventType == PacketTracer.PACKET_SENT || record.eventType == PacketTracer.PACKET_RETRANSMITTED) {
+                    bytesSent += record.size;
+                    gaps.add(record.timestamp);
+                }
+                else if (record.eventType == PacketTracer.PACKET_RECEIVED || record.eventType == PacketTracer.PACKET_DUPLICATE) {
+                    bytesReceived += record.size;
+                    gaps.add(record.timestamp);
+                }
+            }
+            long duration = sessionRecords.get(sessionRecords.size() - 1).timestamp - sessionRecords.get(0).timestamp;
+            System.out.println(sessionId + "," + sessionRecords.size() + "," + bytesSent + "," + bytesReceived + ","
+                    + duration + "," + gaps.maxGap + "," + gaps.gapsOverThreshold);
+        }
+    }
+
+    static class TraceRecord {
+        long timestamp;
+        int sessionId;
+        int eventType;
+        int packetNumber;
+        int size;
+    }
+
+    /* Tracks the intervals between successive packet events */
+    static class GapTracker {
+        long threshold;
+        long previousTimestamp = -1;
+        long maxGap;
+        int gapsOverThreshold;
+
+        GapTracker(long threshold) {
+            this.threshold = threshold;
+        }
+
+        void add(long timestamp) {
+            if (previousTimestamp != -1) {
+                long gap = timestamp - previousTimestamp;
+                maxGap = Math.max(maxGap, gap);
+                if (gap > threshold) {
+                    gapsOverThreshold++;
+                }
+            }
+            previousTimestamp = timestamp;
+        }
+    }
+
+    /* The events of one large message, from its start record to its completion */
+    static class MessageTimeline {
+        TraceRecord start;
+        boolean sending;
+        long firstPacketTime = -1;
+        long endTime;
+        int rounds;
+        int retransmittedPackets;
+        int duplicatePackets;
+        int recoveredPackets;
+        long lastNackTime = -1;
+        long retransmitDelaySum;
+        long maxRetransmitDelay;
+        int retransmitDelayCount;
+        HashMap<Integer, Long> firstSendTimes = new HashMap<Integer, Long>();
+        GapTracker gaps;
+
+        MessageTimeline(TraceRecord start, long gapThreshold) {
+            this.start = start;
+            this.sending = start.eventType == PacketTracer.MESSAGE_SEND_START;
+            this.gaps = new GapTracker(gapThreshold);
+        }
+
+        void add(TraceRecord record) {
+            switch (record.eventType) {
+                case PacketTracer.PACKET_SENT:
+                    firstSendTimes.put(record.packetNumber, record.timestamp);
+                    addPacket(record);
+                    break;
+                case PacketTracer.PACKET_RETRANSMITTED:
+                    retransmittedPackets++;
+                    Long firstSendTime = firstSendTimes.get(record.packetNumber);
+                    if (firstSendTime != null) {
+                        addRetransmitDelay(record.timestamp - firstSendTime);
+                    }
+                    addPacket(record);
+                    break;
+                case PacketTracer.PACKET_RECEIVED:
+                    if (lastNackTime != -1) {
+                        retransmittedPackets++;
+                        addRetransmitDelay(record.timestamp - lastNackTime);
+                    }
+                    addPacket(record);
+                    break;
+                case PacketTracer.PACKET_DUPLICATE:
+                    duplicatePackets++;
+                    addPacket(record);
+                    break;
+                case PacketTracer.PACKET_RECOVERED:
+                    recoveredPackets++;
+                    break;
+                case PacketTracer.NACK_SENT:
+                    rounds++;
+                    lastNackTime = record.timestamp;
+                    break;
+                case PacketTracer.NACK_RECEIVED:
+                    rounds++;
+                    break;
+                case PacketTracer.MESSAGE_COMPLETE:
+                    endTime = record.timestamp;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void addPacket(TraceRecord record) {
+            if (firstPacketTime == -1) {
+                firstPacketTime = record.timestamp;
+            }
+            gaps.add(record.timestamp);
+        }
+
+        private void addRetransmitDelay(long delay) {
+            retransmitDelaySum += delay;
+            maxRetransmitDelay = Math.max(maxRetransmitDelay, delay);
+            retransmitDelayCount++;
+        }
+
+        /* Goodput counts the message's bytes once, however often they were sent, from its first packet to its completion */
+        void print(long traceStart) {
+            long transferTime = firstPacketTime == -1 ? 0 : endTime - firstPacketTime;
+            double goodput = transferTime == 0 ? 0 : (start.size * 8.0 / 1e6) / (transferTime / NANOS_PER_SECOND);
+            long meanRetransmitDelay = retransmitDelayCount == 0 ? 0 : retransmitDelaySum / retransmitDelayCount;
+
+            System.out.println(start.sessionId + "," + (sending ? "Send" : "Receive") + "," + (start.timestamp - traceStart) + ","
+                    + (endTime - start.timestamp) + "," + start.size + "," + start.packetNumber + "," + rounds + ","
+                    + retransmittedPackets + "," + duplicatePackets + "," + recoveredPackets + "," + goodput + "," + meanRetransmitDelay + ","
+                    + maxRetransmitDelay + "," + gaps.maxGap + "," + gaps.gapsOverThreshold);
+        }
+    }
+}
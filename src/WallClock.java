@@ -0,0 +1,22 @@
+import java.time.Instant;
+
+/* A nanosecond-resolution wall clock. System.currentTimeMillis is too coarse to stamp packets with and System.nanoTime
+ * has an arbitrary origin, so we anchor the monotonic clock to the epoch once and advance it with System.nanoTime.
+ */
+public class WallClock {
+
+    static final long NANOS_PER_SECOND = 1000000000L;
+
+    private static final long EPOCH_OFFSET = calibrateEpochOffset();
+
+    private static long calibrateEpochOffset() {
+        Instant now = Instant.now();
+        long monotonicNow = System.nanoTime();
+        return now.getEpochSecond() * NANOS_PER_SECOND + now.getNano() - monotonicNow;
+    }
+
+    /* Returns the number of nanoseconds since the epoch */
+    public static long nanoTime() {
+        return System.nanoTime() + EPOCH_OFFSET;
+    }
+}